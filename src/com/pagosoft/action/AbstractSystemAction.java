@@ -15,7 +15,17 @@
  */
 package com.pagosoft.action;
 
+import com.pagosoft.swing.IconCache;
+
 import javax.swing.*;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
 
 /**
  * <p>AbstractSystemAction is a simple extension of AbstractAction
@@ -60,11 +70,41 @@ import javax.swing.*;
  * to get a KeyStroke from another place than the ID. This is useful if you want
  * to enable your users to change the keystrokes.</p>
  *
+ * <p>All resources of an action are requested from the provider in one
+ * {@link ResourceBatch}. Use {@link #reloadResources(java.util.Collection)} or
+ * {@link ActionContainer#reloadResources()} to resolve the resources of
+ * many actions at once. Providers implementing {@link BatchActionResourceProvider}
+ * will receive a single call for all of them.</p>
+ *
  * @author Patrick Gotthardt
  */
 public abstract class AbstractSystemAction extends AbstractAction {
 	public static final String ID = "__ID__";
-	private static ActionResourceProvider provider;
+	private static volatile ActionResourceProvider provider;
+
+	// http://developer.apple.com/technotes/tn2002/tn2110.html#PARTONE
+	static final boolean MAC_OS_X = System.getProperty("os.name").toLowerCase().startsWith("mac os x");
+	// the number of parsed labels that are kept, labels can be created at runtime
+	private static final int MAX_CACHED_LABELS = 1024;
+	// the same labels are used by many actions, so the most recently used are parsed only once
+	private static final Map<String, MnemonicString> mnemonicStrings = Collections.synchronizedMap(
+			new LinkedHashMap<String, MnemonicString>(64, 0.75f, true) {
+				private static final long serialVersionUID = 1L;
+
+				protected boolean removeEldestEntry(Map.Entry<String, MnemonicString> eldest) {
+					return size() > MAX_CACHED_LABELS;
+				}
+			});
+
+	// all actions whose resources have been resolved, so they can be updated when the locale changes
+	private static final Map<AbstractSystemAction, Boolean> liveActions = Collections.synchronizedMap(new WeakHashMap<AbstractSystemAction, Boolean>());
+
+	// the batch that is currently applied
+	private transient ResourceBatch resolved;
+	// the accelerator taken from the resources, so it can be removed if they change
+	private transient KeyStroke appliedAccelerator;
+	// the same for the mnemonic
+	private transient Integer appliedMnemonic;
 
 	public AbstractSystemAction() {
 	}
@@ -78,20 +118,112 @@ public abstract class AbstractSystemAction extends AbstractAction {
 
 	public void setId(String id) {
 		putValue(ID, id);
-		MnemonicString string = getMnemonicString(getI18NString(id+".name"));
-		putValue(Action.NAME, string.name);
-		if(string.mnemonic != ' ') {
-			putValue(Action.MNEMONIC_KEY, new Integer(string.mnemonic));
+		ResourceBatch batch = new ResourceBatch();
+		requestResources(batch);
+		BatchResourceProviderAdapter.resolve(getResourceProvider(), batch);
+		applyResources(batch);
+	}
+
+	/**
+	 * <p>Resolves the resources of all actions (that have an id) and applies them.</p>
+	 * <p>The resources are requested from each provider in one batch.</p>
+	 * @param actions
+	 */
+	public static void reloadResources(Collection<? extends AbstractSystemAction> actions) {
+		List<AbstractSystemAction> requested = new ArrayList<AbstractSystemAction>(actions.size());
+		List<ResourceBatch> batchOfAction = new ArrayList<ResourceBatch>(actions.size());
+		Map<ActionResourceProvider, ResourceBatch> batches = new IdentityHashMap<ActionResourceProvider, ResourceBatch>();
+		for(AbstractSystemAction action : actions) {
+			if(action.getValue(ID) == null) {
+				continue;
+			}
+			ActionResourceProvider prov = action.getResourceProvider();
+			ResourceBatch batch = batches.get(prov);
+			if(batch == null) {
+				batch = new ResourceBatch();
+				batches.put(prov, batch);
+			}
+			action.requestResources(batch);
+			requested.add(action);
+			batchOfAction.add(batch);
+		}
+		for(Map.Entry<ActionResourceProvider, ResourceBatch> entry : batches.entrySet()) {
+			BatchResourceProviderAdapter.resolve(entry.getKey(), entry.getValue());
+		}
+		for(int i = 0; i < requested.size(); i++) {
+			requested.get(i).applyResources(batchOfAction.get(i));
 		}
+	}
+
+	/**
+	 * @return All actions that are still in use and have an id.
+	 */
+	static List<AbstractSystemAction> getLiveActions() {
+		synchronized(liveActions) {
+			return new ArrayList<AbstractSystemAction>(liveActions.keySet());
+		}
+	}
 
-		if(string.keyStroke != null) {
-			putValue(Action.ACCELERATOR_KEY, string.keyStroke);
+	/**
+	 * Sets the mnemonic of a label. If the label doesn't have one, the
+	 * mnemonic of the previous label is removed (unless it has been changed
+	 * in the meantime).
+	 * @param mnemonic The mnemonic or <code>' '</code> for none.
+	 */
+	void applyMnemonic(char mnemonic) {
+		Integer value = mnemonic != ' ' ? Integer.valueOf(mnemonic) : null;
+		if(value != null) {
+			putValue(Action.MNEMONIC_KEY, value);
+		} else if(appliedMnemonic != null && appliedMnemonic.equals(getValue(Action.MNEMONIC_KEY))) {
+			putValue(Action.MNEMONIC_KEY, null);
 		}
+		appliedMnemonic = value;
+	}
+
+	/**
+	 * Adds the resources this action needs to the batch.
+	 * Subclasses that need additional resources may override this.
+	 * @param batch
+	 */
+	protected void requestResources(ResourceBatch batch) {
+		String id = (String)getValue(ID);
+		Object owner = getResourceOwner();
+		batch.requestString(owner, id+".name");
+		batch.requestConfig(owner, id+".accel");
+	}
+
+	/**
+	 * <p>Sets name, mnemonic and accelerator based on the resolved batch.</p>
+	 * <p>While this method runs {@link #getI18NString} and {@link #getConfig}
+	 * will return the values of the batch.</p>
+	 * @param batch
+	 */
+	protected void applyResources(ResourceBatch batch) {
+		liveActions.put(this, Boolean.TRUE);
+		ResourceBatch oldBatch = resolved;
+		resolved = batch;
+		try {
+			String id = (String)getValue(ID);
+			MnemonicString string = sharedMnemonicString(getI18NString(id+".name"));
+			putValue(Action.NAME, string.name);
+			applyMnemonic(string.mnemonic);
+
+			KeyStroke accelerator = string.keyStroke;
+			// alternative
+			String keyStroke = (String) getConfig(id+".accel");
+			if(keyStroke != null) {
+				accelerator = KeyStroke.getKeyStroke(keyStroke);
+			}
 
-		// alternative
-		String keyStroke = (String) getConfig(id+".accel");
-		if(keyStroke != null) {
-			putValue(Action.ACCELERATOR_KEY, KeyStroke.getKeyStroke(keyStroke));
+			if(accelerator != null) {
+				putValue(Action.ACCELERATOR_KEY, accelerator);
+			} else if(appliedAccelerator != null && appliedAccelerator.equals(getValue(Action.ACCELERATOR_KEY))) {
+				// the resources don't define an accelerator any longer
+				putValue(Action.ACCELERATOR_KEY, null);
+			}
+			appliedAccelerator = accelerator;
+		} finally {
+			resolved = oldBatch;
 		}
 	}
 
@@ -106,37 +238,130 @@ public abstract class AbstractSystemAction extends AbstractAction {
 
 	private static void initializeResourceProvider() {
 		if(provider == null) {
-			provider = new DefaultActionResourceProvider();
+			synchronized(AbstractSystemAction.class) {
+				if(provider == null) {
+					provider = new DefaultActionResourceProvider();
+				}
+			}
 		}
 	}
 
+	/**
+	 * <p>Overwrite this to use another provider than the global one.</p>
+	 * @return The provider used to resolve the resources of this action.
+	 */
+	protected ActionResourceProvider getResourceProvider() {
+		return getProvider();
+	}
+
+	/**
+	 * @return The object that is passed to the {@link ActionResourceProvider}, the action itself by default.
+	 */
+	protected Object getResourceOwner() {
+		return this;
+	}
+
 	protected String getI18NString(String id) {
-		initializeResourceProvider();
-		return provider.getString(this, id);
+		if(resolved != null && resolved.hasString(getResourceOwner(), id)) {
+			return resolved.getString(getResourceOwner(), id);
+		}
+		ActionResourceProvider provider = getResourceProvider();
+		if(provider.isThreadSafe()) {
+			return provider.getString(getResourceOwner(), id);
+		}
+		synchronized(provider) {
+			return provider.getString(getResourceOwner(), id);
+		}
 	}
 
 	protected Object getConfig(String id) {
-		initializeResourceProvider();
-		return provider.getConfig(this, id);
+		if(resolved != null && resolved.hasConfig(getResourceOwner(), id)) {
+			return resolved.getConfig(getResourceOwner(), id);
+		}
+		ActionResourceProvider provider = getResourceProvider();
+		if(provider.isThreadSafe()) {
+			return provider.getConfig(getResourceOwner(), id);
+		}
+		synchronized(provider) {
+			return provider.getConfig(getResourceOwner(), id);
+		}
 	}
 
+	/**
+	 * <p>Returns the icon from the shared {@link IconCache}.
+	 * Relative paths are resolved against the package of this class.</p>
+	 * <p>The icon will be decoded in the background when it is painted
+	 * for the first time.</p>
+	 * @param icon
+	 * @return The icon or <code>null</code> if there is no such resource.
+	 */
 	protected Icon getIcon(String icon) {
-		return new ImageIcon(getClass().getResource(icon));
+		return IconCache.getDefaultInstance().getIcon(getClass(), icon);
 	}
 
 	public void setIcon(String icon) {
 		putValue(SMALL_ICON, getIcon(icon));
 	}
 
+	/**
+	 * <p>Parses a label as described in the class comment.</p>
+	 * <p>The recently used labels are cached, each call returns a new
+	 * instance though.</p>
+	 * @param name
+	 * @return The parsed label.
+	 */
 	public static MnemonicString getMnemonicString(String name) {
+		return copyOf(sharedMnemonicString(name));
+	}
+
+	/**
+	 * Like {@link #getMnemonicString} but returns the cached instance,
+	 * which must not be modified.
+	 * @param name
+	 * @return The parsed label.
+	 */
+	static MnemonicString sharedMnemonicString(String name) {
+		MnemonicString string = mnemonicStrings.get(name);
+		if(string == null) {
+			string = cacheMnemonicString(name, parseMnemonicString(name, MAC_OS_X));
+		}
+		return string;
+	}
+
+	static MnemonicString copyOf(MnemonicString string) {
+		return new MnemonicString(string.mnemonic, string.name, string.keyStroke);
+	}
+
+	/**
+	 * Adds a label that has already been parsed (by the {@link com.pagosoft.action.tools.BundleCompiler}) to the cache.
+	 * @param name
+	 * @param string Must not be modified afterwards.
+	 * @return The cached instance.
+	 */
+	static MnemonicString cacheMnemonicString(String name, MnemonicString string) {
+		synchronized(mnemonicStrings) {
+			MnemonicString existing = mnemonicStrings.get(name);
+			if(existing != null) {
+				return existing;
+			}
+			mnemonicStrings.put(name, string);
+			return string;
+		}
+	}
+
+	/**
+	 * Parses a label without looking at the cache.
+	 * @param name
+	 * @param mac Whether control should be replaced by meta, like on Mac OS X.
+	 * @return A new instance.
+	 */
+	public static MnemonicString parseMnemonicString(String name, boolean mac) {
 		MnemonicString string = new MnemonicString();
 		int index = name.indexOf('@');
 		if(index != -1) {
 			// special handling for mac os (use meta instead of control)
-			String os = System.getProperty("os.name").toLowerCase();
-			// http://developer.apple.com/technotes/tn2002/tn2110.html#PARTONE
-			if(os.startsWith("mac os x")) {
-				string.keyStroke = KeyStroke.getKeyStroke(name.substring(index+1).replaceAll("control", "meta"));
+			if(mac) {
+				string.keyStroke = KeyStroke.getKeyStroke(name.substring(index+1).replace("control", "meta"));
 			} else {
 				string.keyStroke = KeyStroke.getKeyStroke(name.substring(index+1));
 			}
@@ -152,6 +377,9 @@ public abstract class AbstractSystemAction extends AbstractAction {
 		return string;
 	}
 
+	/**
+	 * The parts of a label.
+	 */
 	public static class MnemonicString {
 		private String name;
 		private char mnemonic;
@@ -16,6 +16,7 @@
 package com.pagosoft.action;
 
 import com.pagosoft.swing.ComponentProvider;
+import com.pagosoft.swing.LazyIcon;
 
 import javax.swing.*;
 
@@ -56,9 +57,12 @@ public class ActionButtonProvider implements ComponentProvider {
 			item.setSelected(stateAction.isSelected());
 			item.addItemListener(stateAction);
 			stateAction.addPropertyChangeListener(new SelectedPropertyChangeListener(item));
+			LazyIcon.installDisabledIcon(item);
 			return item;
 		} else if(obj instanceof Action) {
-			return createButton((Action)obj);
+			AbstractButton button = createButton((Action)obj);
+			LazyIcon.installDisabledIcon(button);
+			return button;
 		} else if(obj instanceof JComponent) {
 			return (JComponent)obj;
 		}
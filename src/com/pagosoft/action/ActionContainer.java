@@ -23,6 +23,10 @@ import javax.swing.*;
 import java.awt.event.*;
 import java.util.List;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.IdentityHashMap;
+import java.util.Map;
 
 /**
  * <p>This class is multiple things at once.
@@ -31,6 +35,9 @@ import java.util.ArrayList;
  * use {@link com.pagosoft.swing.ListModelBinder} directly.</p>
  * <p>It extends {@link AbstractSystemAction} thus it offers all of its
  * features.</p>
+ * <p>The menus and toolbars it creates are bound weakly (see
+ * {@link com.pagosoft.swing.ListModelBinder#installWeak}), the container
+ * doesn't keep them alive once they are no longer used.</p>
  *
  * <p>A simple example:</p>
  * <pre><code>ActionContainer container = new ActionContainer();
@@ -40,8 +47,14 @@ import java.util.ArrayList;
  * @author Patrick Gotthardt
  */
 public class ActionContainer extends AbstractSystemAction implements ListModel, ComponentCreator {
+	private static final ListDataListener[] NO_LISTENERS = new ListDataListener[0];
+
 	protected List actionList;
-	private List listenerList;
+	// copy-on-write, so firing doesn't need a lock or a copy
+	private volatile ListDataListener[] listeners = NO_LISTENERS;
+	private final Object listenerLock = new Object();
+	private int updateLevel;
+	private UpdateLog updateLog;
 
 	public ActionContainer() {
 		this(null);
@@ -51,13 +64,19 @@ public class ActionContainer extends AbstractSystemAction implements ListModel,
 		super(id);
 
 		actionList = createActionList();
-		listenerList = new ArrayList();
 	}
 
 	// just in case we would like to use a different list
 	// (for example: to do sorting)
-	protected List createActionList() {
-		return new ArrayList();
+	// the default list indexes the actions by identity, so indexOf doesn't have to search
+	protected List<Object> createActionList() {
+		return new IndexedList();
+	}
+
+	// the list with its element type, the field is raw for compatibility
+	@SuppressWarnings("unchecked")
+	List<Object> elements() {
+		return actionList;
 	}
 
 	/**
@@ -95,11 +114,29 @@ public class ActionContainer extends AbstractSystemAction implements ListModel,
 	 * @param act
 	 */
 	public void add(Action act) {
-		actionList.add(act);
-		int index = actionList.indexOf(act);
+		int index = append(act);
 		fireIntervalAdded(this, index, index);
 	}
 
+	/**
+	 * Adds the element to the list.
+	 * @param element
+	 * @return The index of the element.
+	 */
+	int append(Object element) {
+		elements().add(element);
+		if(appendsAtEnd()) {
+			return actionList.size()-1;
+		}
+		// the list might sort its elements
+		return actionList.indexOf(element);
+	}
+
+	// whether add(Object) is known to add to the end of the list
+	private boolean appendsAtEnd() {
+		return actionList instanceof IndexedList || actionList.getClass() == ArrayList.class;
+	}
+
 	/**
 	 * Add the action at the specified index.
 	 *
@@ -109,28 +146,74 @@ public class ActionContainer extends AbstractSystemAction implements ListModel,
 	 * @param act
 	 */
 	public void add(int index, Action act) {
-		actionList.add(index, act);
+		elements().add(index, act);
 		fireIntervalAdded(this, index, index);
 	}
 
+	/**
+	 * Add the actions to the container, using a single event.
+	 * @param actions
+	 */
+	public void addAll(Collection<? extends Action> actions) {
+		appendAll(actions);
+	}
+
+	/**
+	 * Add the actions at the specified index, using a single event.
+	 * @param index
+	 * @param actions
+	 */
+	public void addAll(int index, Collection<? extends Action> actions) {
+		insertAll(index, actions);
+	}
+
+	void appendAll(final Collection<?> elements) {
+		if(appendsAtEnd()) {
+			insertAll(getSize(), elements);
+			return;
+		}
+		// the list might sort its elements
+		batch(new Runnable() {
+			public void run() {
+				for(Object element : elements) {
+					int index = append(element);
+					fireIntervalAdded(ActionContainer.this, index, index);
+				}
+			}
+		});
+	}
+
+	void insertAll(int index, Collection<?> elements) {
+		if(elements.isEmpty()) {
+			return;
+		}
+		elements().addAll(index, elements);
+		fireIntervalAdded(this, index, index+elements.size()-1);
+	}
+
 	/**
 	 * Set the contained actions, all old actions will be removed.
 	 * @param act
 	 */
-	public void setActions(Action[] act) {
-		removeAll();
-		for (int i = 0; i < act.length; i++) {
-			actionList.add(act[i]);
-		}
-		fireIntervalAdded(this, 0, act.length);
+	public void setActions(final Action[] act) {
+		batch(new Runnable() {
+			public void run() {
+				removeAll();
+				appendAll(Arrays.asList(act));
+			}
+		});
 	}
 
 	/**
-	 * Remove the action from the container.
+	 * Remove the (first occurrence of the) action from the container.
+	 * Nothing happens if the container doesn't contain the action.
 	 * @param act
 	 */
 	public void remove(Action act) {
-		remove(actionList.indexOf(act));
+		int index = actionList.indexOf(act);
+		if(index != -1) {
+			remove(index);
+		}
 	}
 
 	/**
@@ -142,13 +225,94 @@ public class ActionContainer extends AbstractSystemAction implements ListModel,
 		fireIntervalRemoved(this, index, index);
 	}
 
+	/**
+	 * Remove the actions from index <code>from</code> (inclusive)
+	 * to index <code>to</code> (exclusive), using a single event.
+	 * @param from
+	 * @param to
+	 */
+	public void removeRange(int from, int to) {
+		if(from > to) {
+			throw new IndexOutOfBoundsException("from "+from+" > to "+to);
+		}
+		if(from == to) {
+			return;
+		}
+		actionList.subList(from, to).clear();
+		fireIntervalRemoved(this, from, to-1);
+	}
+
 	/**
 	 * Removes all actions from the container.
 	 */
 	public void removeAll() {
 		int size = getSize();
+		if(size == 0) {
+			return;
+		}
 		actionList.clear();
-		fireIntervalRemoved(this, 0, size);
+		fireIntervalRemoved(this, 0, size-1);
+	}
+
+	/**
+	 * <p>Starts an update, the changes of the container won't be reported
+	 * to the listeners until the matching call of {@link #endUpdate}.
+	 * They are merged into as few events as possible then.</p>
+	 * <p>Updates may be nested, the events are sent when the outermost
+	 * update ends.</p>
+	 * <pre><code>container.beginUpdate();
+	 * try {
+	 * 	container.removeAll();
+	 * 	container.addAll(windows);
+	 * } finally {
+	 * 	container.endUpdate();
+	 * }</code></pre>
+	 * @see #batch(Runnable)
+	 */
+	public void beginUpdate() {
+		// without listeners there is nothing to record, adding a listener
+		// during the update starts the recording
+		if(updateLevel++ == 0 && listeners.length > 0) {
+			updateLog = new UpdateLog(getSize());
+		}
+	}
+
+	/**
+	 * Ends an update and sends the merged events if it was the outermost one.
+	 * @throws IllegalStateException If there is no update to end.
+	 */
+	public void endUpdate() {
+		if(updateLevel == 0) {
+			throw new IllegalStateException("endUpdate() without beginUpdate()");
+		}
+		if(--updateLevel > 0) {
+			return;
+		}
+		UpdateLog log = updateLog;
+		updateLog = null;
+		if(log != null) {
+			log.fire(this);
+		}
+	}
+
+	/**
+	 * Runs the changes between {@link #beginUpdate} and {@link #endUpdate}.
+	 * @param changes
+	 */
+	public void batch(Runnable changes) {
+		beginUpdate();
+		try {
+			changes.run();
+		} finally {
+			endUpdate();
+		}
+	}
+
+	/**
+	 * @return <code>true</code> while an update is running.
+	 */
+	public boolean isUpdating() {
+		return updateLevel > 0;
 	}
 
 	/**
@@ -160,6 +324,33 @@ public class ActionContainer extends AbstractSystemAction implements ListModel,
 		return actionList.indexOf(act);
 	}
 
+	/**
+	 * <p>Resolves the resources of this container and of all actions
+	 * and containers within it again, using one batch per provider.</p>
+	 * @see AbstractSystemAction#reloadResources(java.util.Collection)
+	 */
+	public void reloadResources() {
+		List<AbstractSystemAction> actions = new ArrayList<AbstractSystemAction>();
+		collectActions(this, actions, new IdentityHashMap<Object, Object>());
+		reloadResources(actions);
+	}
+
+	private static void collectActions(Object obj, List<AbstractSystemAction> actions, Map<Object, Object> visited) {
+		if(obj == null || visited.put(obj, obj) != null) {
+			return;
+		}
+		if(obj instanceof AbstractSystemAction) {
+			actions.add((AbstractSystemAction)obj);
+		}
+		if(obj instanceof ListModel) {
+			ListModel<?> model = (ListModel<?>)obj;
+			int size = model.getSize();
+			for(int i = 0; i < size; i++) {
+				collectActions(model.getElementAt(i), actions, visited);
+			}
+		}
+	}
+
 	/**
 	 * Not supposed to be implemented, doesn't do anything
 	 * @param e
@@ -188,7 +379,28 @@ public class ActionContainer extends AbstractSystemAction implements ListModel,
 	 * @param l
 	 */
 	public void addListDataListener(ListDataListener l) {
-		listenerList.add(l);
+		if(l == null) {
+			return;
+		}
+		boolean updating = updateLevel > 0;
+		if(updating) {
+			// the new listener sees the current state, so the changes up to now
+			// have to be sent to the other listeners before
+			UpdateLog log = updateLog;
+			updateLog = null;
+			if(log != null) {
+				log.fire(this);
+			}
+		}
+		synchronized(listenerLock) {
+			ListDataListener[] old = listeners;
+			ListDataListener[] changed = Arrays.copyOf(old, old.length+1);
+			changed[old.length] = l;
+			listeners = changed;
+		}
+		if(updating) {
+			updateLog = new UpdateLog(getSize());
+		}
 	}
 
 	/**
@@ -196,36 +408,76 @@ public class ActionContainer extends AbstractSystemAction implements ListModel,
 	 * @param l
 	 */
 	public void removeListDataListener(ListDataListener l) {
-		listenerList.remove(l);
+		synchronized(listenerLock) {
+			ListDataListener[] old = listeners;
+			// remove the last registration, like EventListenerList does
+			for(int i = old.length-1; i >= 0; i--) {
+				if(old[i] == l) {
+					if(old.length == 1) {
+						listeners = NO_LISTENERS;
+					} else {
+						ListDataListener[] changed = new ListDataListener[old.length-1];
+						System.arraycopy(old, 0, changed, 0, i);
+						System.arraycopy(old, i+1, changed, i, old.length-i-1);
+						listeners = changed;
+					}
+					return;
+				}
+			}
+		}
+	}
+
+	/**
+	 * <p>Listeners may add or remove listeners while they are notified,
+	 * the changes will take effect with the next event.</p>
+	 * @return All listeners of this container.
+	 */
+	public ListDataListener[] getListDataListeners() {
+		return listeners.clone();
 	}
 
 	protected final void fireContentsChanged(Object source, int index0, int index1) {
-		ListDataEvent event = null;
-		for(int i = listenerList.size()-1; i > -1; i--) {
-			if(event == null) {
-				event = new ListDataEvent(source, ListDataEvent.CONTENTS_CHANGED, index0, index1);
-			}
-			((ListDataListener)listenerList.get(i)).contentsChanged(event);
+		if(updateLog != null) {
+			updateLog.changed(Math.min(index0, index1), Math.max(index0, index1));
+			return;
+		}
+		ListDataListener[] l = listeners;
+		if(l.length == 0) {
+			return;
+		}
+		ListDataEvent event = new ListDataEvent(source, ListDataEvent.CONTENTS_CHANGED, index0, index1);
+		for(int i = l.length-1; i > -1; i--) {
+			l[i].contentsChanged(event);
 		}
 	}
 
 	protected final void fireIntervalAdded(Object source, int index0, int index1) {
-		ListDataEvent event = null;
-		for(int i = listenerList.size()-1; i > -1; i--) {
-			if(event == null) {
-				event = new ListDataEvent(source, ListDataEvent.INTERVAL_ADDED, index0, index1);
-			}
-			((ListDataListener)listenerList.get(i)).intervalAdded(event);
+		if(updateLog != null) {
+			updateLog.added(Math.min(index0, index1), Math.max(index0, index1));
+			return;
+		}
+		ListDataListener[] l = listeners;
+		if(l.length == 0) {
+			return;
+		}
+		ListDataEvent event = new ListDataEvent(source, ListDataEvent.INTERVAL_ADDED, index0, index1);
+		for(int i = l.length-1; i > -1; i--) {
+			l[i].intervalAdded(event);
 		}
 	}
 
 	protected final void fireIntervalRemoved(Object source, int index0, int index1) {
-		ListDataEvent event = null;
-		for(int i = listenerList.size()-1; i > -1; i--) {
-			if(event == null) {
-				event = new ListDataEvent(source, ListDataEvent.INTERVAL_REMOVED, index0, index1);
-			}
-			((ListDataListener)listenerList.get(i)).intervalRemoved(event);
+		if(updateLog != null) {
+			updateLog.removed(Math.min(index0, index1), Math.max(index0, index1));
+			return;
+		}
+		ListDataListener[] l = listeners;
+		if(l.length == 0) {
+			return;
+		}
+		ListDataEvent event = new ListDataEvent(source, ListDataEvent.INTERVAL_REMOVED, index0, index1);
+		for(int i = l.length-1; i > -1; i--) {
+			l[i].intervalRemoved(event);
 		}
 	}
 
@@ -247,7 +499,7 @@ public class ActionContainer extends AbstractSystemAction implements ListModel,
 	 */
 	public JMenuBar createMenuBar(ComponentProvider prov) {
 		JMenuBar mb = new JMenuBar();
-		ListModelBinder.install(mb, this, prov);
+		ListModelBinder.installWeak(mb, this, prov);
 		return mb;
 	}
 
@@ -257,7 +509,7 @@ public class ActionContainer extends AbstractSystemAction implements ListModel,
 
 	public JToolBar createToolBar(ComponentProvider prov) {
 		JToolBar mb = new JToolBar();
-		ListModelBinder.install(mb, this, prov);
+		ListModelBinder.installWeak(mb, this, prov);
 		return mb;
 	}
 
@@ -267,7 +519,7 @@ public class ActionContainer extends AbstractSystemAction implements ListModel,
 
 	public JMenu createMenu(ComponentProvider prov) {
 		JMenu menu = new JMenu(this);
-		ListModelBinder.install(menu, this, prov);
+		ListModelBinder.installMenu(menu, this, prov);
 		return menu;
 	}
 
@@ -277,10 +529,117 @@ public class ActionContainer extends AbstractSystemAction implements ListModel,
 
 	public JPopupMenu createPopupMenu(ComponentProvider prov) {
 		JPopupMenu menu = new JPopupMenu();
-		ListModelBinder.install(menu, this, prov);
+		ListModelBinder.installWeak(menu, this, prov);
 		return menu;
 	}
 
+	/**
+	 * <p>Records the changes during an update. It tracks the original position
+	 * of every element, so the changes can be reported as the removal of the
+	 * original elements that are gone (from the end to the start) followed by
+	 * the insertion of the new elements (from the start to the end). This way
+	 * every event matches the state of the container a listener will see.</p>
+	 */
+	private static class UpdateLog {
+		private int sizeBefore;
+		// the original position of every element, -1 for inserted elements
+		private int[] origins;
+		private boolean[] changed;
+		private int size;
+		// false if the events didn't match the container
+		private boolean valid = true;
+
+		public UpdateLog(int size) {
+			sizeBefore = size;
+			this.size = size;
+			origins = new int[Math.max(16, size)];
+			changed = new boolean[origins.length];
+			for(int i = 0; i < size; i++) {
+				origins[i] = i;
+			}
+		}
+
+		public void added(int index0, int index1) {
+			if(!valid || index0 < 0 || index0 > size) {
+				valid = false;
+				return;
+			}
+			int count = index1 - index0 + 1;
+			if(size + count > origins.length) {
+				int capacity = Math.max(size + count, origins.length * 2);
+				origins = Arrays.copyOf(origins, capacity);
+				changed = Arrays.copyOf(changed, capacity);
+			}
+			System.arraycopy(origins, index0, origins, index1+1, size-index0);
+			System.arraycopy(changed, index0, changed, index1+1, size-index0);
+			Arrays.fill(origins, index0, index1+1, -1);
+			Arrays.fill(changed, index0, index1+1, false);
+			size += count;
+		}
+
+		public void removed(int index0, int index1) {
+			if(!valid || index0 < 0 || index1 >= size) {
+				valid = false;
+				return;
+			}
+			System.arraycopy(origins, index1+1, origins, index0, size-index1-1);
+			System.arraycopy(changed, index1+1, changed, index0, size-index1-1);
+			size -= index1 - index0 + 1;
+		}
+
+		public void changed(int index0, int index1) {
+			for(int i = Math.max(0, index0); i <= index1 && i < size; i++) {
+				changed[i] = true;
+			}
+		}
+
+		public void fire(ActionContainer container) {
+			if(!valid || size != container.getSize()) {
+				// somebody didn't report the changes correctly, replace everything
+				if(sizeBefore > 0) {
+					container.fireIntervalRemoved(container, 0, sizeBefore-1);
+				}
+				if(container.getSize() > 0) {
+					container.fireIntervalAdded(container, 0, container.getSize()-1);
+				}
+				return;
+			}
+			boolean[] survivors = new boolean[sizeBefore];
+			for(int i = 0; i < size; i++) {
+				if(origins[i] != -1) {
+					survivors[origins[i]] = true;
+				}
+			}
+			for(int i = sizeBefore-1; i >= 0; i--) {
+				if(!survivors[i]) {
+					int end = i;
+					while(i > 0 && !survivors[i-1]) {
+						i--;
+					}
+					container.fireIntervalRemoved(container, i, end);
+				}
+			}
+			for(int i = 0; i < size; i++) {
+				if(origins[i] == -1) {
+					int start = i;
+					while(i+1 < size && origins[i+1] == -1) {
+						i++;
+					}
+					container.fireIntervalAdded(container, start, i);
+				}
+			}
+			for(int i = 0; i < size; i++) {
+				if(changed[i] && origins[i] != -1) {
+					int start = i;
+					while(i+1 < size && changed[i+1] && origins[i+1] != -1) {
+						i++;
+					}
+					container.fireContentsChanged(container, start, i);
+				}
+			}
+		}
+	}
+
 	public JMenuBar createMenuBar() {
 		return createMenuBar(ActionMenuProvider.getInstance());
 	}
@@ -0,0 +1,37 @@
+/*
+ * Copyright 2005 Patrick Gotthardt
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.pagosoft.action;
+
+import javax.swing.*;
+import java.awt.event.ActionEvent;
+
+/**
+ * <p>Receives the exceptions thrown by {@link ActionMethod}s.</p>
+ * <p>Install your own implementation through
+ * {@link ActionFactory#setExceptionHandler} if you'd like to show
+ * an error dialog or report the problem in any other way. The default
+ * implementation will log the exception.</p>
+ *
+ * @author Patrick Gotthardt
+ */
+public interface ActionExceptionHandler {
+	/**
+	 * @param action The action whose method failed.
+	 * @param e The event that triggered the action.
+	 * @param exception The exception thrown by the method.
+	 */
+	public void handleException(Action action, ActionEvent e, Exception exception);
+}
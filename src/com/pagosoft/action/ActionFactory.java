@@ -18,28 +18,169 @@ package com.pagosoft.action;
 import javax.swing.*;
 import java.util.Map;
 import java.util.HashMap;
+import java.util.List;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
 import java.util.logging.Logger;
 import java.util.logging.Level;
 import java.awt.event.*;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.UndeclaredThrowableException;
 
 /**
+ * <p>Creates Actions for the {@link ActionMethod}s of an object.</p>
+ * <p>If the class of the object has been compiled with the
+ * {@link com.pagosoft.action.processor.ActionMethodProcessor} its generated
+ * {@link ActionMethodTable} will be used. Otherwise the class is scanned
+ * using reflection.</p>
+ * <p>Exceptions thrown by the methods are passed on to the
+ * {@link ActionExceptionHandler} set through {@link #setExceptionHandler}.</p>
+ * <p>All methods of this class may be called from any thread. Use
+ * {@link #createActionMaps} to prepare the actions of many objects in
+ * the background.</p>
+ *
  * @author Patrick Gotthardt
  * @date 06.03.2006 20:35:57
  */
 public class ActionFactory {
+	// The ActionMethods are looked up only once per class. ClassValue keeps
+	// them with the class itself, so they don't prevent it from being unloaded.
+	private static final ClassValue<ActionMethodInfo[]> actionMethods = new ClassValue<ActionMethodInfo[]>() {
+		protected ActionMethodInfo[] computeValue(Class<?> type) {
+			ActionMethodTable table = loadTable(type);
+			if(table != null) {
+				return table.getActionMethods();
+			}
+			return scanActionMethods(type);
+		}
+	};
+
+	private static volatile ActionExceptionHandler exceptionHandler;
+
+	public static ActionExceptionHandler getExceptionHandler() {
+		if(exceptionHandler == null) {
+			initializeExceptionHandler();
+		}
+		return exceptionHandler;
+	}
+
+	public static void setExceptionHandler(ActionExceptionHandler exceptionHandler) {
+		ActionFactory.exceptionHandler = exceptionHandler;
+	}
+
+	private static synchronized void initializeExceptionHandler() {
+		if(exceptionHandler == null) {
+			exceptionHandler = new LoggingExceptionHandler();
+		}
+	}
+
 	public static Map<String, Action> createActionMap(Object obj) {
 		Map<String, Action> map = new HashMap<String, Action>();
 
+		ActionMethodInfo[] methods = getActionMethods(obj.getClass());
+		for(int i = 0; i < methods.length; i++) {
+			map.put(methods[i].getId(), createAction(obj, methods[i]));
+		}
+
+		return map;
+	}
+
+	/**
+	 * Creates the action maps of all objects using the common ForkJoinPool.
+	 * @see #createActionMaps(java.util.Collection, java.util.concurrent.ExecutorService)
+	 */
+	public static List<Map<String, Action>> createActionMaps(Collection<?> objects) throws InterruptedException {
+		return createActionMaps(objects, ForkJoinPool.commonPool());
+	}
+
+	/**
+	 * <p>Creates the action maps of all objects concurrently and waits
+	 * until all of them are finished.</p>
+	 * <p>Use this to prepare the actions during startup without blocking
+	 * the EDT. The returned maps aren't shared with any other thread, so they
+	 * may be handed over to the EDT as they are.</p>
+	 * @param objects
+	 * @param executor The executor that should create the maps.
+	 * @return The action maps in the same order as the objects.
+	 * @throws InterruptedException If the calling thread has been interrupted while waiting.
+	 */
+	public static List<Map<String, Action>> createActionMaps(Collection<?> objects, ExecutorService executor) throws InterruptedException {
+		List<Callable<Map<String, Action>>> tasks = new ArrayList<Callable<Map<String, Action>>>(objects.size());
+		for(final Object obj : objects) {
+			tasks.add(new Callable<Map<String, Action>>() {
+				public Map<String, Action> call() {
+					return createActionMap(obj);
+				}
+			});
+		}
+		List<Map<String, Action>> maps = new ArrayList<Map<String, Action>>(tasks.size());
+		for(Future<Map<String, Action>> future : executor.invokeAll(tasks)) {
+			try {
+				maps.add(future.get());
+			} catch(ExecutionException e) {
+				Throwable cause = e.getCause();
+				if(cause instanceof RuntimeException) {
+					throw (RuntimeException)cause;
+				} else if(cause instanceof Error) {
+					throw (Error)cause;
+				}
+				throw new IllegalStateException(cause);
+			}
+		}
+		return maps;
+	}
+
+	/**
+	 * <p>Like {@link #createActionMap}, but the Actions will only be created
+	 * when they're requested from the map for the first time.</p>
+	 * <p>This is what {@link ActionObject} uses, as most objects only
+	 * need a few of the Actions they declare.</p>
+	 * @param obj
+	 * @return A map whose keys are the ids of the actions.
+	 */
+	public static Map<String, Action> createLazyActionMap(Object obj) {
+		return new LazyActionMap(obj, getActionMethods(obj.getClass()));
+	}
+
+	static Action createAction(Object obj, ActionMethodInfo info) {
+		return new AnnotatedAction(obj, info);
+	}
+
+	private static ActionMethodInfo[] getActionMethods(Class<?> clazz) {
+		return actionMethods.get(clazz);
+	}
+
+	private static ActionMethodTable loadTable(Class<?> clazz) {
+		try {
+			Class<?> tableClass = Class.forName(clazz.getName() + ActionMethodTable.SUFFIX, true, clazz.getClassLoader());
+			return (ActionMethodTable) tableClass.getDeclaredConstructor().newInstance();
+		} catch(ClassNotFoundException e) {
+			return null;
+		} catch(Exception e) {
+			Logger.getLogger("com.pagosoft.action.ActionFactory").log(Level.WARNING, "Could not load the ActionMethodTable of "+clazz.getName(), e);
+			return null;
+		}
+	}
+
+	private static ActionMethodInfo[] scanActionMethods(Class<?> clazz) {
 		Method[] methods = null;
 		try {
-			methods = obj.getClass().getDeclaredMethods();
+			methods = clazz.getDeclaredMethods();
 		} catch(Exception e) {
-			Logger.getLogger("com.pagosoft.action.ActionFactory").warning("Could not access all members of "+obj);
-			methods = obj.getClass().getMethods();
+			Logger.getLogger("com.pagosoft.action.ActionFactory").warning("Could not access all members of "+clazz.getName());
+			methods = clazz.getMethods();
 		}
 		int length = methods.length;
-		AnnotatedAction.currentObject = obj;
+		List<ActionMethodInfo> infos = new ArrayList<ActionMethodInfo>();
 		for(int i = 0; i < length; i++) {
 			if(methods[i].isAnnotationPresent(ActionMethod.class)) {
 				ActionMethod annotation = methods[i].getAnnotation(ActionMethod.class);
@@ -49,71 +190,108 @@ public class ActionFactory {
 					Logger.getLogger("com.pagosoft.action.ActionFactory").log(Level.WARNING, "Could not change accessability", e);
 					continue;
 				}
-				AnnotatedAction.currentMethod = methods[i];
-				map.put(annotation.id().length() == 0 ? methods[i].getName() : annotation.id(),
-						new AnnotatedAction(obj, methods[i], annotation));
+				ActionInvoker invoker;
+				try {
+					invoker = new MethodHandleInvoker(methods[i], annotation.event());
+				} catch(Exception e) {
+					Logger.getLogger("com.pagosoft.action.ActionFactory").log(Level.WARNING, "Could not access "+methods[i], e);
+					continue;
+				}
+				infos.add(new ActionMethodInfo(
+						annotation.id().length() == 0 ? methods[i].getName() : annotation.id(),
+						annotation.icon(), annotation.label(), invoker));
 			}
 		}
-
-		return map;
+		return infos.toArray(new ActionMethodInfo[infos.size()]);
 	}
 
-	private static class AnnotatedAction extends AbstractSystemAction {
-		// this is propably the worst hack I ever wrote...
-		private static Method currentMethod;
-		private static Object currentObject;
+	/**
+	 * Calls the method through a MethodHandle that has been adapted to
+	 * <code>(Object, ActionEvent)void</code> once, so every call is an
+	 * <code>invokeExact</code> without boxing or access checks.
+	 */
+	private static class MethodHandleInvoker implements ActionInvoker {
+		private static final MethodType INVOKER_TYPE = MethodType.methodType(void.class, Object.class, ActionEvent.class);
 
-		private Method executedMethod;
-		private Object methodObject;
-		private ActionMethod annotation;
+		private final MethodHandle handle;
 
-		public AnnotatedAction(Object methodObject, Method executedMethod, ActionMethod annotation) {
-			super(annotation.id().length() == 0 ? executedMethod.getName() : annotation.id());
+		public MethodHandleInvoker(Method method, boolean event) throws IllegalAccessException {
+			MethodHandle mh = MethodHandles.lookup().unreflect(method);
+			if(Modifier.isStatic(method.getModifiers())) {
+				mh = MethodHandles.dropArguments(mh, 0, Object.class);
+			}
+			if(!event) {
+				mh = MethodHandles.dropArguments(mh, 1, ActionEvent.class);
+			}
+			handle = mh.asType(INVOKER_TYPE);
+		}
 
-			if(!"".equals(annotation.icon())) {
-				setIcon(annotation.icon());
+		public void invoke(Object target, ActionEvent e) throws Exception {
+			try {
+				handle.invokeExact(target, e);
+			} catch(Exception exp) {
+				throw exp;
+			} catch(Error err) {
+				throw err;
+			} catch(Throwable t) {
+				throw new UndeclaredThrowableException(t);
 			}
+		}
+	}
 
-			if(!"".equals(annotation.label())) {
-				MnemonicString string = getMnemonicString(annotation.label());
-				putValue(Action.NAME, string.getName());
-				if(string.getMnemonic() != ' ') {
-					putValue(Action.MNEMONIC_KEY, new Integer(string.getMnemonic()));
-				}
+	private static class LoggingExceptionHandler implements ActionExceptionHandler {
+		public void handleException(Action action, ActionEvent e, Exception exception) {
+			Logger.getLogger("com.pagosoft.action.ActionFactory").log(Level.SEVERE,
+					"Action '"+action.getValue(AbstractSystemAction.ID)+"' failed", exception);
+		}
+	}
 
-				if(string.getKeyStroke() != null) {
-					putValue(Action.ACCELERATOR_KEY, string.getKeyStroke());
-				}
-			}
+	private static class AnnotatedAction extends AbstractSystemAction {
+		private final ActionInvoker invoker;
+		private final Object methodObject;
+		private final ActionMethodInfo info;
 
-			this.annotation = annotation;
+		public AnnotatedAction(Object methodObject, ActionMethodInfo info) {
+			super();
+			// setId() calls getResourceOwner(), so the fields must be set before
 			this.methodObject = methodObject;
-			this.executedMethod = executedMethod;
-		}
+			this.invoker = info.getInvoker();
+			this.info = info;
+			setId(info.getId());
 
-		protected Object getConfig(String id) {
-			if(methodObject == null) {
-				methodObject = currentObject;
+			if(!"".equals(info.getIcon())) {
+				setIcon(info.getIcon());
 			}
-			return getProvider().getConfig(methodObject, id);
 		}
 
-		protected String getI18NString(String id) {
-			if(methodObject == null) {
-				methodObject = currentObject;
+		protected Object getResourceOwner() {
+			return methodObject;
+		}
+
+		protected void applyResources(ResourceBatch batch) {
+			super.applyResources(batch);
+
+			// the label of the annotation wins over the bundle
+			MnemonicString string = info.getMnemonicString();
+			if(string != null) {
+				putValue(Action.NAME, string.getName());
+				// the mnemonic of the bundle doesn't belong to this name
+				applyMnemonic(string.getMnemonic());
+
+				// but not over the accelerator of the config
+				String accel = info.getId()+".accel";
+				if(string.getKeyStroke() != null
+						&& (!batch.hasConfig(methodObject, accel) || batch.getConfig(methodObject, accel) == null)) {
+					putValue(Action.ACCELERATOR_KEY, string.getKeyStroke());
+				}
 			}
-			return getProvider().getString(methodObject, id);
 		}
 
 		public void actionPerformed(ActionEvent e) {
 			try {
-				if(annotation.event()) {
-					executedMethod.invoke(methodObject, e);
-				} else {
-					executedMethod.invoke(methodObject);
-				}
+				invoker.invoke(methodObject, e);
 			} catch (Exception exp) {
-				exp.printStackTrace();
+				getExceptionHandler().handleException(this, e, exp);
 			}
 		}
 	}
@@ -0,0 +1,39 @@
+/*
+ * Copyright 2005 Patrick Gotthardt
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.pagosoft.action;
+
+import java.awt.event.ActionEvent;
+
+/**
+ * <p>Calls an {@link ActionMethod} on the object it has been declared in.</p>
+ * <p>Implementations are either generated at compile time by
+ * {@link com.pagosoft.action.processor.ActionMethodProcessor} or
+ * created by {@link ActionFactory} using reflection.</p>
+ *
+ * @author Patrick Gotthardt
+ */
+public interface ActionInvoker {
+	/**
+	 * Invokes the method on the target.
+	 * The event will only be passed on if the method has been
+	 * declared with <code>event=true</code>.
+	 *
+	 * @param target The object that declares the method.
+	 * @param e The event that triggered the action.
+	 * @throws Exception Whatever the invoked method throws.
+	 */
+	public void invoke(Object target, ActionEvent e) throws Exception;
+}
@@ -0,0 +1,175 @@
+/*
+ * Copyright 2005 Patrick Gotthardt
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.pagosoft.action;
+
+import javax.swing.*;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.BiConsumer;
+
+/**
+ * <p>Switches the language of all actions without rebuilding the
+ * menus and toolbars that show them.</p>
+ * <p>{@link #setLocale} changes the default locale and then resolves
+ * name, mnemonic and accelerator of every {@link AbstractSystemAction}
+ * that is still in use again. The resources are resolved in batches
+ * on background threads. The new values are applied to the actions in
+ * a single step on the EDT, the components will update themselves
+ * through the usual property change events.</p>
+ * <pre><code>ActionLocale.setLocale(Locale.GERMAN);</code></pre>
+ *
+ * <p>Custom {@link ActionResourceProvider}s should use
+ * <code>Locale.getDefault()</code> to pick their resources, just like
+ * {@link DefaultActionResourceProvider} does. Only the batches of providers
+ * that are {@link ActionResourceProvider#isThreadSafe thread-safe} are
+ * resolved concurrently, the others one after another.</p>
+ *
+ * @author Patrick Gotthardt
+ */
+public final class ActionLocale {
+	// number of actions resolved by one background task
+	private static final int CHUNK_SIZE = 256;
+
+	private ActionLocale() {}
+
+	/**
+	 * Changes the locale using the common ForkJoinPool.
+	 * @see #setLocale(java.util.Locale, java.util.concurrent.Executor)
+	 */
+	public static CompletableFuture<Void> setLocale(Locale locale) {
+		return setLocale(locale, ForkJoinPool.commonPool());
+	}
+
+	/**
+	 * Sets the default locale (of the JVM and of Swing) and reloads
+	 * the resources of all actions.
+	 * @param locale
+	 * @param executor The executor used to resolve the resources.
+	 * @return A future that completes once the actions have been updated.
+	 */
+	public static CompletableFuture<Void> setLocale(Locale locale, Executor executor) {
+		Locale.setDefault(locale);
+		JComponent.setDefaultLocale(locale);
+		return reloadAll(executor);
+	}
+
+	/**
+	 * Reloads the resources of all actions using the common ForkJoinPool.
+	 * @see #reloadAll(java.util.concurrent.Executor)
+	 */
+	public static CompletableFuture<Void> reloadAll() {
+		return reloadAll(ForkJoinPool.commonPool());
+	}
+
+	/**
+	 * <p>Resolves the resources of all actions that are still in use
+	 * using the executor and applies them on the EDT.</p>
+	 * <p>Use this directly if your provider has changed its resources
+	 * for another reason than the locale.</p>
+	 * @param executor
+	 * @return A future that completes once the actions have been updated.
+	 */
+	public static CompletableFuture<Void> reloadAll(Executor executor) {
+		return reload(AbstractSystemAction.getLiveActions(), executor);
+	}
+
+	/**
+	 * Resolves the resources of the actions using the executor and applies them on the EDT.
+	 * @param actions
+	 * @param executor
+	 * @return A future that completes once the actions have been updated.
+	 */
+	static CompletableFuture<Void> reload(final List<AbstractSystemAction> actions, Executor executor) {
+		final List<ResourceBatch> batchOfAction = new ArrayList<ResourceBatch>(actions.size());
+
+		// group the actions by provider and split each group into chunks
+		List<ResourceBatch> batches = new ArrayList<ResourceBatch>();
+		List<ActionResourceProvider> providers = new ArrayList<ActionResourceProvider>();
+		Map<ActionResourceProvider, ResourceBatch> current = new IdentityHashMap<ActionResourceProvider, ResourceBatch>();
+		Map<ResourceBatch, int[]> counts = new IdentityHashMap<ResourceBatch, int[]>();
+		for(AbstractSystemAction action : actions) {
+			ActionResourceProvider provider = action.getResourceProvider();
+			ResourceBatch batch = current.get(provider);
+			if(batch == null || counts.get(batch)[0] == CHUNK_SIZE) {
+				batch = new ResourceBatch();
+				current.put(provider, batch);
+				counts.put(batch, new int[1]);
+				batches.add(batch);
+				providers.add(provider);
+			}
+			action.requestResources(batch);
+			counts.get(batch)[0]++;
+			batchOfAction.add(batch);
+		}
+
+		List<CompletableFuture<Void>> futures = new ArrayList<CompletableFuture<Void>>(batches.size());
+		// the batches of the providers that must not be called concurrently
+		final List<Runnable> sequential = new ArrayList<Runnable>();
+		for(int i = 0; i < batches.size(); i++) {
+			final ActionResourceProvider provider = providers.get(i);
+			final ResourceBatch batch = batches.get(i);
+			Runnable task = new Runnable() {
+				public void run() {
+					BatchResourceProviderAdapter.resolve(provider, batch);
+				}
+			};
+			if(provider.isThreadSafe()) {
+				futures.add(CompletableFuture.runAsync(task, executor));
+			} else {
+				sequential.add(task);
+			}
+		}
+		if(!sequential.isEmpty()) {
+			futures.add(CompletableFuture.runAsync(new Runnable() {
+				public void run() {
+					for(Runnable task : sequential) {
+						task.run();
+					}
+				}
+			}, executor));
+		}
+
+		final CompletableFuture<Void> done = new CompletableFuture<Void>();
+		CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[futures.size()])).whenComplete(
+				new BiConsumer<Void, Throwable>() {
+			public void accept(Void result, Throwable failure) {
+				if(failure != null) {
+					done.completeExceptionally(failure);
+					return;
+				}
+				SwingUtilities.invokeLater(new Runnable() {
+					public void run() {
+						try {
+							for(int i = 0; i < actions.size(); i++) {
+								actions.get(i).applyResources(batchOfAction.get(i));
+							}
+							done.complete(null);
+						} catch(RuntimeException e) {
+							done.completeExceptionally(e);
+						}
+					}
+				});
+			}
+		});
+		return done;
+	}
+}
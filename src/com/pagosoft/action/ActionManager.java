@@ -15,10 +15,26 @@
  */
 package com.pagosoft.action;
 
+import com.pagosoft.swing.LazyIcon;
+
 import javax.swing.*;
-import java.util.Map;
-import java.util.HashMap;
-import java.awt.event.*;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 /**
  * <p>In PgsAction, actions are supposed to be singletons.</p>
@@ -49,13 +65,36 @@ import java.awt.event.*;
  * you'll find the {@link #put}-method very useful.</p>
  * <p>Use {@link #remove} to remove actions you won't need anymore.</p>
  *
+ * <p>If creating an action through its default constructor isn't possible
+ * (or you'd like to avoid the reflection) use {@link #register} to
+ * specify how it should be created.</p>
+ *
+ * <p>ActionManager may be used from any thread. Every action is created
+ * exactly once, even if several threads request it at the same time.
+ * Once it has been created, {@link #get} doesn't lock anymore. Be careful
+ * with actions whose constructors request each other from different
+ * threads at the same time, they'll wait for each other.</p>
+ *
+ * <p>To speed up the startup of your application you may use {@link #preload}
+ * to create the actions (and load their bundles and icons) in the background,
+ * for example while the splash screen is shown:</p>
+ * <pre><code>Future&lt;Void&gt; f = ActionManager.getDefaultInstance().preload(
+ *         ActionManager.class.getClassLoader(), ActionManager.INDEX_RESOURCE);
+ * // ... show the splash screen ...
+ * f.get();
+ * JMenuBar mb = ActionManager.getDefaultInstance().get(MainMenu.class).createMenuBar();</code></pre>
+ *
  * @author Patrick Gotthardt
  */
 public class ActionManager {
-	private static ActionManager defaultInstance;
+	private static volatile ActionManager defaultInstance;
 	public static ActionManager getDefaultInstance() {
 		if(defaultInstance == null) {
-			defaultInstance = new ActionManager();
+			synchronized(ActionManager.class) {
+				if(defaultInstance == null) {
+					defaultInstance = new ActionManager();
+				}
+			}
 		}
 		return defaultInstance;
 	}
@@ -64,27 +103,178 @@ public class ActionManager {
 		defaultInstance = instance;
 	}
 
-	private Map<Class<? extends Action>, Action> actionMap = new HashMap<Class<? extends Action>, Action>();
+	/**
+	 * <p>The default name of the resources that list the actions to preload.</p>
+	 * <p>It's a text file with the fully qualified name of one action class per
+	 * line. Empty lines and lines starting with <code>#</code> are ignored.</p>
+	 * <p>{@link com.pagosoft.action.processor.ActionIndexProcessor} generates
+	 * it while compiling your actions.</p>
+	 */
+	public static final String INDEX_RESOURCE = "META-INF/pgsaction/actions.index";
+
+	private ConcurrentMap<Class<? extends Action>, Entry> actionMap = new ConcurrentHashMap<Class<? extends Action>, Entry>();
 
 	public <K extends Action> K get(Class<K> clazz) {
-		K act = (K)actionMap.get(clazz);
-		if(act == null) {
-			try {
-				act = clazz.newInstance();
-				actionMap.put(clazz, act);
-			} catch (Exception e) {
-				e.printStackTrace();
+		Entry entry = actionMap.get(clazz);
+		if(entry == null) {
+			Entry created = new Entry(clazz, null);
+			entry = actionMap.putIfAbsent(clazz, created);
+			if(entry == null) {
+				entry = created;
 			}
 		}
+		return (K)entry.getAction();
+	}
+
+	/**
+	 * <p>Specify how the action should be created. It'll be created when
+	 * it is requested for the first time.</p>
+	 * <p>An action that has already been created for this class will be replaced.</p>
+	 * @param clazz
+	 * @param supplier
+	 */
+	public <K extends Action> void register(Class<K> clazz, Supplier<? extends K> supplier) {
+		actionMap.put(clazz, new Entry(clazz, supplier));
+	}
+
+	/**
+	 * Creates the actions using the common ForkJoinPool.
+	 * @see #preload(java.util.Collection, java.util.concurrent.Executor)
+	 */
+	public CompletableFuture<Void> preload(Collection<Class<? extends Action>> classes) {
+		return preload(classes, ForkJoinPool.commonPool());
+	}
+
+	/**
+	 * <p>Creates all actions concurrently, so later calls to {@link #get}
+	 * will only have to look them up. Their icons are decoded right away
+	 * instead of on the first paint.</p>
+	 * <p>Actions that fail to be created are logged and skipped, just
+	 * like they are by {@link #get}.</p>
+	 * @param classes
+	 * @param executor
+	 * @return A future that completes once all actions have been created.
+	 */
+	public CompletableFuture<Void> preload(Collection<Class<? extends Action>> classes, Executor executor) {
+		List<CompletableFuture<Void>> futures = new ArrayList<CompletableFuture<Void>>(classes.size());
+		for(final Class<? extends Action> clazz : classes) {
+			futures.add(CompletableFuture.runAsync(new Runnable() {
+				public void run() {
+					Action act = get(clazz);
+					if(act != null && act.getValue(Action.SMALL_ICON) instanceof LazyIcon) {
+						((LazyIcon)act.getValue(Action.SMALL_ICON)).preload();
+					}
+				}
+			}, executor));
+		}
+		return CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[futures.size()]));
+	}
+
+	/**
+	 * Preloads the actions of the index using the common ForkJoinPool.
+	 * @see #preload(ClassLoader, String, java.util.concurrent.Executor)
+	 */
+	public CompletableFuture<Void> preload(ClassLoader loader, String index) {
+		return preload(loader, index, ForkJoinPool.commonPool());
+	}
 
-		return act;
+	/**
+	 * <p>Preloads all actions listed in the index resources of the class loader.
+	 * The index is read by the executor as well, so this method returns
+	 * right away.</p>
+	 * @param loader The class loader used to find the index and the actions.
+	 * @param index The name of the index resources, usually {@link #INDEX_RESOURCE}.
+	 * @param executor
+	 * @return A future that completes once all actions have been created.
+	 * @see #INDEX_RESOURCE
+	 */
+	public CompletableFuture<Void> preload(final ClassLoader loader, final String index, final Executor executor) {
+		return CompletableFuture.supplyAsync(new Supplier<List<Class<? extends Action>>>() {
+			public List<Class<? extends Action>> get() {
+				return readIndex(loader, index);
+			}
+		}, executor).thenCompose(new Function<List<Class<? extends Action>>, CompletableFuture<Void>>() {
+			public CompletableFuture<Void> apply(List<Class<? extends Action>> classes) {
+				return preload(classes, executor);
+			}
+		});
+	}
+
+	private static List<Class<? extends Action>> readIndex(ClassLoader loader, String index) {
+		Logger logger = Logger.getLogger("com.pagosoft.action.ActionManager");
+		List<Class<? extends Action>> classes = new ArrayList<Class<? extends Action>>();
+		try {
+			Enumeration<URL> urls = loader.getResources(index);
+			while(urls.hasMoreElements()) {
+				URL url = urls.nextElement();
+				BufferedReader in = new BufferedReader(new InputStreamReader(url.openStream(), "UTF-8"));
+				try {
+					String line;
+					while((line = in.readLine()) != null) {
+						line = line.trim();
+						if(line.length() == 0 || line.startsWith("#")) {
+							continue;
+						}
+						try {
+							classes.add(Class.forName(line, false, loader).asSubclass(Action.class));
+						} catch(Exception e) {
+							logger.warning("Could not load action '"+line+"' listed in "+url);
+						}
+					}
+				} finally {
+					in.close();
+				}
+			}
+		} catch(IOException e) {
+			logger.log(Level.WARNING, "Could not read the action index "+index, e);
+		}
+		return classes;
 	}
 
 	public void put(Class<? extends Action> clazz, Action act) {
-		actionMap.put(clazz, act);
+		Entry entry = new Entry(clazz, null);
+		entry.action = act;
+		actionMap.put(clazz, entry);
 	}
 
 	public void remove(Class<? extends Action> clazz) {
 		actionMap.remove(clazz);
 	}
+
+	private static class Entry {
+		private Class<? extends Action> clazz;
+		private Supplier<? extends Action> supplier;
+		private volatile Action action;
+
+		public Entry(Class<? extends Action> clazz, Supplier<? extends Action> supplier) {
+			this.clazz = clazz;
+			this.supplier = supplier;
+		}
+
+		public Action getAction() {
+			Action act = action;
+			if(act == null) {
+				synchronized(this) {
+					act = action;
+					if(act == null) {
+						act = createAction();
+						action = act;
+					}
+				}
+			}
+			return act;
+		}
+
+		private Action createAction() {
+			try {
+				if(supplier != null) {
+					return supplier.get();
+				}
+				return clazz.getDeclaredConstructor().newInstance();
+			} catch(Exception e) {
+				Logger.getLogger("com.pagosoft.action.ActionManager").log(Level.WARNING, "Could not create "+clazz.getName(), e);
+				return null;
+			}
+		}
+	}
 }
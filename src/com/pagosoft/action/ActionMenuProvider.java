@@ -16,6 +16,7 @@
 package com.pagosoft.action;
 
 import com.pagosoft.swing.ComponentProvider;
+import com.pagosoft.swing.LazyIcon;
 import com.pagosoft.swing.ListModelBinder;
 
 import javax.swing.*;
@@ -32,7 +33,7 @@ public class ActionMenuProvider implements ComponentProvider {
 			return ((ComponentCreator)obj).createMenu(this);
 		}
 		JMenu menu = new JMenu((Action)obj);
-		ListModelBinder.install(menu, obj, this);
+		ListModelBinder.installMenu(menu, obj, this);
 		return menu;
 	}
 
@@ -68,9 +69,12 @@ public class ActionMenuProvider implements ComponentProvider {
 			item.setSelected(stateAction.isSelected());
 			item.addItemListener(stateAction);
 			stateAction.addPropertyChangeListener(new SelectedPropertyChangeListener(item));
+			LazyIcon.installDisabledIcon(item);
 			return item;
 		} else if(obj instanceof Action) {
-			return createMenuItem((Action)obj);
+			JMenuItem item = createMenuItem((Action)obj);
+			LazyIcon.installDisabledIcon(item);
+			return item;
 		} else if(obj instanceof JComponent) {
 			return (JComponent)obj;
 		}
@@ -0,0 +1,66 @@
+/*
+ * Copyright 2005 Patrick Gotthardt
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.pagosoft.action;
+
+/**
+ * <p>Describes a single {@link ActionMethod} of a class.</p>
+ * <p>The values are those of the annotation, except for the id
+ * which already defaults to the name of the method.</p>
+ * <p>Instances are created once per class and shared by all
+ * Actions created for its objects, so the label is parsed
+ * right away.</p>
+ *
+ * @see ActionMethodTable
+ * @author Patrick Gotthardt
+ */
+public final class ActionMethodInfo {
+	private final String id;
+	private final String icon;
+	private final String label;
+	private final ActionInvoker invoker;
+	private final AbstractSystemAction.MnemonicString mnemonicString;
+
+	public ActionMethodInfo(String id, String icon, String label, ActionInvoker invoker) {
+		this.id = id;
+		this.icon = icon;
+		this.label = label;
+		this.invoker = invoker;
+		mnemonicString = label.length() == 0 ? null : AbstractSystemAction.sharedMnemonicString(label);
+	}
+
+	public String getId() {
+		return id;
+	}
+
+	public String getIcon() {
+		return icon;
+	}
+
+	public String getLabel() {
+		return label;
+	}
+
+	/**
+	 * @return The parsed label or <code>null</code> if no label has been specified.
+	 */
+	public AbstractSystemAction.MnemonicString getMnemonicString() {
+		return mnemonicString == null ? null : AbstractSystemAction.copyOf(mnemonicString);
+	}
+
+	public ActionInvoker getInvoker() {
+		return invoker;
+	}
+}
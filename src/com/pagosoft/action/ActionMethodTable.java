@@ -0,0 +1,38 @@
+/*
+ * Copyright 2005 Patrick Gotthardt
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.pagosoft.action;
+
+/**
+ * <p>Lists the {@link ActionMethod}s declared by one class.</p>
+ * <p>You're not supposed to implement this yourself. The
+ * {@link com.pagosoft.action.processor.ActionMethodProcessor} generates an
+ * implementation named <code>&lt;class name&gt;$$ActionMethodTable</code>
+ * for every class that declares ActionMethods. {@link ActionFactory} will use
+ * it instead of scanning the class with reflection.</p>
+ *
+ * @author Patrick Gotthardt
+ */
+public interface ActionMethodTable {
+	/**
+	 * The suffix that is appended to the name of the class to find its table.
+	 */
+	public static final String SUFFIX = "$$ActionMethodTable";
+
+	/**
+	 * @return The ActionMethods declared by the class.
+	 */
+	public ActionMethodInfo[] getActionMethods();
+}
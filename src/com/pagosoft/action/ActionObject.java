@@ -23,6 +23,7 @@ import java.util.Collection;
 /**
  * An implementation of the Map-Interface that inspects an object for
  * ActionMethod-annotations and provides access to the methods as Action-object.
+ * The Actions are created the first time they are requested.
  *
  * Sample:
  * <pre><code>// define an action-class
@@ -60,7 +61,7 @@ public class ActionObject implements Map<String,Action> {
 
 	private void ensureActionMapExists() {
 		if(actionMap == null) {
-			actionMap = ActionFactory.createActionMap(actionObject);
+			actionMap = ActionFactory.createLazyActionMap(actionObject);
 		}
 	}
 
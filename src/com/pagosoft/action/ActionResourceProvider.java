@@ -4,6 +4,10 @@ package com.pagosoft.action;
  * <p>Implementations of this interface will be used by
  * {@link AbstractSystemAction} to transform
  * the id into a basic setup of the action.</p>
+ * <p>The methods may be called from any thread, {@link ActionLocale} and
+ * {@link ActionManager#preload} resolve resources in the background. Unless
+ * {@link #isThreadSafe} returns <code>true</code> the framework synchronizes
+ * on the provider, so only one thread at a time calls it.</p>
  *
  * @author Patrick Gotthardt
  */
@@ -25,4 +29,13 @@ public interface ActionResourceProvider {
 	 * @return Some other configuration
 	 */
 	public Object getConfig(Object action, String id);
+
+	/**
+	 * <p>Return <code>true</code> if the methods may be called by many
+	 * threads at the same time.</p>
+	 * @return <code>false</code> by default.
+	 */
+	public default boolean isThreadSafe() {
+		return false;
+	}
 }
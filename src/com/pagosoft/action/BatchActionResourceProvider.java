@@ -0,0 +1,26 @@
+package com.pagosoft.action;
+
+/**
+ * <p>An {@link ActionResourceProvider} that is able to resolve many
+ * resources at once.</p>
+ * <p>Implement this if looking up a single resource is expensive,
+ * for example because it requires a database query. {@link AbstractSystemAction}
+ * will pass all resources of an action (or of a whole {@link ActionContainer}
+ * tree) in one {@link ResourceBatch}.</p>
+ * <p>Providers that only implement {@link ActionResourceProvider} are
+ * wrapped by a {@link BatchResourceProviderAdapter}.</p>
+ * <p>{@link #resolve} has the same thread-safety requirements as the other
+ * methods, see {@link ActionResourceProvider#isThreadSafe}.</p>
+ *
+ * @author Patrick Gotthardt
+ */
+public interface BatchActionResourceProvider extends ActionResourceProvider {
+	/**
+	 * <p>Resolve all requests of the batch and store the results through
+	 * {@link ResourceBatch#setValue}.</p>
+	 * <p>The results must be the same that {@link #getString} and
+	 * {@link #getConfig} would return.</p>
+	 * @param batch
+	 */
+	public void resolve(ResourceBatch batch);
+}
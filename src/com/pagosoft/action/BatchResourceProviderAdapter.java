@@ -0,0 +1,65 @@
+package com.pagosoft.action;
+
+/**
+ * <p>Adapts a simple {@link ActionResourceProvider} to the
+ * {@link BatchActionResourceProvider}-interface by resolving
+ * one request after the other.</p>
+ *
+ * @author Patrick Gotthardt
+ */
+public class BatchResourceProviderAdapter implements BatchActionResourceProvider {
+	private ActionResourceProvider provider;
+
+	public BatchResourceProviderAdapter(ActionResourceProvider provider) {
+		this.provider = provider;
+	}
+
+	/**
+	 * @param provider
+	 * @return The provider itself if it supports batches, an adapter otherwise.
+	 */
+	public static BatchActionResourceProvider adapt(ActionResourceProvider provider) {
+		if(provider instanceof BatchActionResourceProvider) {
+			return (BatchActionResourceProvider)provider;
+		}
+		return new BatchResourceProviderAdapter(provider);
+	}
+
+	/**
+	 * Resolves the batch, synchronized on the provider unless it is thread-safe.
+	 * @param provider
+	 * @param batch
+	 */
+	public static void resolve(ActionResourceProvider provider, ResourceBatch batch) {
+		if(provider.isThreadSafe()) {
+			adapt(provider).resolve(batch);
+			return;
+		}
+		synchronized(provider) {
+			adapt(provider).resolve(batch);
+		}
+	}
+
+	public String getString(Object action, String key) {
+		return provider.getString(action, key);
+	}
+
+	public Object getConfig(Object action, String id) {
+		return provider.getConfig(action, id);
+	}
+
+	public boolean isThreadSafe() {
+		return provider.isThreadSafe();
+	}
+
+	public void resolve(ResourceBatch batch) {
+		int size = batch.size();
+		for(int i = 0; i < size; i++) {
+			if(batch.isConfig(i)) {
+				batch.setValue(i, provider.getConfig(batch.getOwner(i), batch.getKey(i)));
+			} else {
+				batch.setValue(i, provider.getString(batch.getOwner(i), batch.getKey(i)));
+			}
+		}
+	}
+}
@@ -0,0 +1,191 @@
+/*
+ * Copyright 2005 Patrick Gotthardt
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.pagosoft.action;
+
+import javax.swing.*;
+import java.awt.event.InputEvent;
+import java.awt.event.KeyEvent;
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * <p>The base class of the bundles generated by the {@link com.pagosoft.action.tools.BundleCompiler}.</p>
+ * <p>A compiled bundle contains all keys of a <code>Bundle.properties</code>
+ * merged with its parents, sorted for a binary search. The labels have already
+ * been split into name, mnemonic and keystroke at build time, they are put into
+ * the cache of {@link AbstractSystemAction#getMnemonicString} when the bundle
+ * is loaded.</p>
+ * <p>Use {@link CompiledResourceProvider} to read them.</p>
+ *
+ * @author Patrick Gotthardt
+ */
+public abstract class CompiledBundle {
+	/**
+	 * Appended to the name of the bundle (including the locale) to get
+	 * the name of the generated class, e.g. <code>com.pagosoft.demo.Bundle_de$$Compiled</code>.
+	 */
+	public static final String SUFFIX = "$$Compiled";
+
+	// the bits of the old modifiers (SHIFT_MASK to ALT_GRAPH_MASK), KeyStroke
+	// reports them along with the extended ones
+	private static final int OLD_MODIFIERS = 0x3f;
+
+	private String baseName;
+	private String locale;
+	private String[] keys;
+	private String[] values;
+	private int size;
+
+	/**
+	 * @param baseName The name of the bundle, e.g. <code>com.pagosoft.demo.Bundle</code>.
+	 * @param locale The locale of the bundle (empty for the base bundle).
+	 * @param capacity The number of keys.
+	 */
+	protected CompiledBundle(String baseName, String locale, int capacity) {
+		this.baseName = baseName;
+		this.locale = locale;
+		keys = new String[capacity];
+		values = new String[capacity];
+	}
+
+	/**
+	 * Adds a value that isn't a label. The keys have to be added in their natural order.
+	 * @param key
+	 * @param value
+	 */
+	protected final void add(String key, String value) {
+		keys[size] = key;
+		values[size] = value;
+		size++;
+	}
+
+	/**
+	 * Adds a label without keystroke.
+	 * @param key
+	 * @param value The raw value.
+	 * @param name
+	 * @param mnemonic
+	 */
+	protected final void add(String key, String value, String name, char mnemonic) {
+		add(key, value);
+		AbstractSystemAction.cacheMnemonicString(value, new AbstractSystemAction.MnemonicString(mnemonic, name, null));
+	}
+
+	/**
+	 * Adds a label with a keystroke. On Mac OS X control will be replaced by meta.
+	 * @param key
+	 * @param value The raw value.
+	 * @param name
+	 * @param mnemonic
+	 * @param keyCode See {@link KeyStroke#getKeyCode()}.
+	 * @param keyChar See {@link KeyStroke#getKeyChar()}.
+	 * @param modifiers See {@link KeyStroke#getModifiers()}, only the extended
+	 * 		modifiers (<code>*_DOWN_MASK</code>) are used.
+	 * @param onKeyRelease See {@link KeyStroke#isOnKeyRelease()}.
+	 */
+	protected final void add(String key, String value, String name, char mnemonic,
+			int keyCode, char keyChar, int modifiers, boolean onKeyRelease) {
+		add(key, value);
+		modifiers = extendedModifiers(modifiers);
+		if(AbstractSystemAction.MAC_OS_X && (modifiers & InputEvent.CTRL_DOWN_MASK) != 0) {
+			modifiers = (modifiers & ~InputEvent.CTRL_DOWN_MASK) | InputEvent.META_DOWN_MASK;
+		}
+		KeyStroke keyStroke = keyChar != KeyEvent.CHAR_UNDEFINED
+				? KeyStroke.getKeyStroke(Character.valueOf(keyChar), modifiers)
+				: KeyStroke.getKeyStroke(keyCode, modifiers, onKeyRelease);
+		AbstractSystemAction.cacheMnemonicString(value, new AbstractSystemAction.MnemonicString(mnemonic, name, keyStroke));
+	}
+
+	/**
+	 * @param modifiers The modifiers of a KeyStroke.
+	 * @return The extended modifiers without the old ones.
+	 */
+	public static int extendedModifiers(int modifiers) {
+		return modifiers & ~OLD_MODIFIERS;
+	}
+
+	/**
+	 * @param key
+	 * @return The value or <code>null</code> if there is no such key.
+	 */
+	public String getString(String key) {
+		int index = Arrays.binarySearch(keys, 0, size, key);
+		return index < 0 ? null : values[index];
+	}
+
+	/**
+	 * @param key
+	 * @return <code>true</code> if the bundle (or one of its parents) contains the key.
+	 */
+	public boolean containsKey(String key) {
+		return Arrays.binarySearch(keys, 0, size, key) >= 0;
+	}
+
+	/**
+	 * @return All keys in their natural order.
+	 */
+	public String[] getKeys() {
+		return Arrays.copyOf(keys, size);
+	}
+
+	public String getBaseName() {
+		return baseName;
+	}
+
+	/**
+	 * @return The locale of the bundle, empty for the base bundle.
+	 */
+	public String getLocale() {
+		return locale;
+	}
+
+	/**
+	 * <p>Loads the most specific compiled bundle for the locale, just like
+	 * {@link java.util.ResourceBundle#getBundle} would (but without falling back
+	 * to the default locale).</p>
+	 * @param baseName
+	 * @param locale
+	 * @param loader
+	 * @return The bundle or <code>null</code> if there is no compiled bundle.
+	 */
+	public static CompiledBundle getBundle(String baseName, Locale locale, ClassLoader loader) {
+		String[] candidates = {
+				"_"+locale.getLanguage()+"_"+locale.getCountry()+"_"+locale.getVariant(),
+				"_"+locale.getLanguage()+"_"+locale.getCountry(),
+				"_"+locale.getLanguage(),
+				""
+		};
+		for(String suffix : candidates) {
+			// skip the candidates with empty parts
+			if(suffix.endsWith("_")) {
+				continue;
+			}
+			try {
+				Class<?> clazz = Class.forName(baseName+suffix+SUFFIX, true, loader);
+				return (CompiledBundle)clazz.getDeclaredConstructor().newInstance();
+			} catch(ClassNotFoundException e) {
+				// try the parent
+			} catch(ReflectiveOperationException e) {
+				throw new IllegalStateException("Couldn't load compiled bundle "+baseName+suffix, e);
+			}
+		}
+		return null;
+	}
+
+	public String toString() {
+		return locale.length() == 0 ? baseName : baseName+"_"+locale;
+	}
+}
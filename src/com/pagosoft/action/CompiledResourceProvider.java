@@ -0,0 +1,148 @@
+/*
+ * Copyright 2005 Patrick Gotthardt
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.pagosoft.action;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * <p>An {@link ActionResourceProvider} that reads the bundles generated
+ * by the {@link com.pagosoft.action.tools.BundleCompiler} instead of parsing the
+ * <code>Bundle.properties</code> at runtime.</p>
+ * <p>It looks for the compiled bundle in the package of the action, just
+ * like {@link DefaultActionResourceProvider} does. Packages without a
+ * compiled bundle, keys that aren't part of it and all configs are passed
+ * on to a fallback provider.</p>
+ * <pre><code>AbstractSystemAction.setProvider(new CompiledResourceProvider());</code></pre>
+ *
+ * <p>This class is thread-safe if its fallback is.</p>
+ *
+ * @author Patrick Gotthardt
+ */
+public class CompiledResourceProvider implements BatchActionResourceProvider {
+	private BatchActionResourceProvider fallback;
+	private ConcurrentMap<String, BundleEntry> cache = new ConcurrentHashMap<String, BundleEntry>();
+
+	/**
+	 * Uses a {@link DefaultActionResourceProvider} as fallback.
+	 */
+	public CompiledResourceProvider() {
+		this(new DefaultActionResourceProvider());
+	}
+
+	/**
+	 * @param fallback Used for everything that isn't part of a compiled bundle.
+	 */
+	public CompiledResourceProvider(ActionResourceProvider fallback) {
+		this.fallback = BatchResourceProviderAdapter.adapt(fallback);
+	}
+
+	public String getString(Object action, String key) {
+		CompiledBundle bundle = getBundle(action.getClass());
+		String value = bundle == null ? null : bundle.getString(key);
+		return value != null ? value : fallback.getString(action, key);
+	}
+
+	public Object getConfig(Object action, String id) {
+		return fallback.getConfig(action, id);
+	}
+
+	public boolean isThreadSafe() {
+		return fallback.isThreadSafe();
+	}
+
+	public void resolve(ResourceBatch batch) {
+		int size = batch.size();
+		ResourceBatch rest = null;
+		List<Integer> restIndices = null;
+		CompiledBundle bundle = null;
+		Class<?> bundleClass = null;
+		for(int i = 0; i < size; i++) {
+			String value = null;
+			if(!batch.isConfig(i)) {
+				// consecutive requests usually come from the same class
+				Class<?> clazz = batch.getOwner(i).getClass();
+				if(clazz != bundleClass) {
+					bundle = getBundle(clazz);
+					bundleClass = clazz;
+				}
+				value = bundle == null ? null : bundle.getString(batch.getKey(i));
+			}
+			if(value != null) {
+				batch.setValue(i, value);
+			} else {
+				if(rest == null) {
+					rest = new ResourceBatch();
+					restIndices = new ArrayList<Integer>();
+				}
+				if(batch.isConfig(i)) {
+					rest.requestConfig(batch.getOwner(i), batch.getKey(i));
+				} else {
+					rest.requestString(batch.getOwner(i), batch.getKey(i));
+				}
+				restIndices.add(i);
+			}
+		}
+		if(rest == null) {
+			return;
+		}
+		fallback.resolve(rest);
+		for(int i : restIndices) {
+			Object owner = batch.getOwner(i);
+			String key = batch.getKey(i);
+			batch.setValue(i, batch.isConfig(i) ? rest.getConfig(owner, key) : rest.getString(owner, key));
+		}
+	}
+
+	/**
+	 * Removes all bundles from the cache, so they'll be loaded again.
+	 */
+	public void clearCache() {
+		cache.clear();
+	}
+
+	private CompiledBundle getBundle(Class<?> clazz) {
+		String className = clazz.getName();
+		int index = className.lastIndexOf('.');
+		String packageName = index == -1 ? "" : className.substring(0, index);
+		Locale locale = Locale.getDefault();
+		BundleEntry entry = cache.get(packageName);
+		if(entry == null || !entry.locale.equals(locale)) {
+			String bundleName = index == -1 ? "Bundle" : packageName+".Bundle";
+			ClassLoader loader = clazz.getClassLoader();
+			if(loader == null) {
+				loader = ClassLoader.getSystemClassLoader();
+			}
+			entry = new BundleEntry(locale, CompiledBundle.getBundle(bundleName, locale, loader));
+			cache.put(packageName, entry);
+		}
+		return entry.bundle;
+	}
+
+	private static class BundleEntry {
+		private Locale locale;
+		// null if the package has no compiled bundle
+		private CompiledBundle bundle;
+
+		public BundleEntry(Locale locale, CompiledBundle bundle) {
+			this.locale = locale;
+			this.bundle = bundle;
+		}
+	}
+}
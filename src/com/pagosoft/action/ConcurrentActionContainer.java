@@ -0,0 +1,355 @@
+/*
+ * Copyright 2005 Patrick Gotthardt
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.pagosoft.action;
+
+import javax.swing.*;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * <p>An {@link ActionContainer} that may be changed from any thread.</p>
+ * <p>The changes are applied to a shadow list right away and queued for the
+ * EDT. All changes that are queued until the EDT gets to them are applied in
+ * one update, so the listeners (and the menus and toolbars created by the
+ * container) receive a few merged events at most once per event-loop tick.
+ * Changes made on the EDT itself are applied immediately.</p>
+ * <p>An update ({@link #beginUpdate}, {@link #batch}) of another thread
+ * holds back all queued changes until it ends, so the EDT receives the
+ * changes of the update as one unit. This includes changes made by the
+ * EDT itself in the meantime.</p>
+ * <pre><code>// on a worker thread
+ * recentFiles.removeAll();
+ * recentFiles.addAll(actions);</code></pre>
+ *
+ * <p>The methods of the {@link ListModel} ({@link #getSize}, {@link #getElementAt})
+ * and {@link #indexOf} return the state the listeners have been told about and
+ * should only be used on the EDT. Other threads should use {@link #getSnapshot}
+ * which includes all changes.</p>
+ * <p>The indexes passed to {@link #add(int, Action)}, {@link #addAll(int, Collection)},
+ * {@link #remove(int)} and {@link #removeRange} refer to the state the calling
+ * thread can see: on the EDT those of {@link #getElementAt} and {@link #indexOf},
+ * even while changes of other threads are still queued, on other threads those
+ * of {@link #getSnapshot}. Removing an element on the EDT that a queued change
+ * removes already does nothing.</p>
+ *
+ * @author Patrick Gotthardt
+ */
+public class ConcurrentActionContainer extends ActionContainer {
+	private static final long serialVersionUID = 1L;
+
+	private final Object lock = new Object();
+	// the state after all queued changes, guarded by lock
+	private IndexedList shadow = new IndexedList();
+	private List<Change> queue = new ArrayList<Change>();
+	private boolean flushScheduled;
+	// the number of threads other than the EDT that are in an update
+	private int openUpdates;
+	private final ThreadLocal<int[]> updateLevel = new ThreadLocal<int[]>();
+	// null if the shadow has changed since the last snapshot
+	private Object[] snapshot;
+
+	private final Runnable flushTask = new Runnable() {
+		public void run() {
+			flush();
+		}
+	};
+
+	public ConcurrentActionContainer() {
+		this(null);
+	}
+
+	public ConcurrentActionContainer(String id) {
+		super(id);
+	}
+
+	public void add(Action act) {
+		insert(-1, Collections.<Object>singletonList(act));
+	}
+
+	public void add(int index, Action act) {
+		insert(index, Collections.<Object>singletonList(act));
+	}
+
+	public void addAll(Collection<? extends Action> actions) {
+		insert(-1, new ArrayList<Object>(actions));
+	}
+
+	public void addAll(int index, Collection<? extends Action> actions) {
+		insert(index, new ArrayList<Object>(actions));
+	}
+
+	public void setActions(Action[] act) {
+		boolean schedule;
+		synchronized(lock) {
+			if(shadow.size() > 0) {
+				schedule = enqueue(new Change(0, shadow.size(), null));
+				shadow.clear();
+			} else {
+				schedule = false;
+			}
+			if(act.length > 0) {
+				List<Object> added = new ArrayList<Object>(Arrays.asList(act));
+				schedule |= enqueue(new Change(0, 0, added));
+				shadow.addAll(added);
+			}
+		}
+		changed(schedule);
+	}
+
+	public void remove(Action act) {
+		boolean schedule;
+		synchronized(lock) {
+			int index = shadow.indexOf(act);
+			if(index == -1) {
+				return;
+			}
+			schedule = enqueue(new Change(index, 1, null));
+			shadow.remove(index);
+		}
+		changed(schedule);
+	}
+
+	public void remove(int index) {
+		removeRange(index, index+1);
+	}
+
+	public void removeRange(int from, int to) {
+		boolean edt = SwingUtilities.isEventDispatchThread();
+		boolean schedule = false;
+		synchronized(lock) {
+			int size = edt ? actionList.size() : shadow.size();
+			if(from < 0 || to > size || from > to) {
+				throw new IndexOutOfBoundsException("from "+from+", to "+to+", size "+size);
+			}
+			if(from == to) {
+				return;
+			}
+			if(edt && !queue.isEmpty()) {
+				// the queued changes might have moved or removed the elements
+				for(int i = to-1; i >= from; i--) {
+					int index = shadowIndex(i, false);
+					if(index != -1) {
+						schedule |= enqueue(new Change(index, 1, null));
+						shadow.remove(index);
+					}
+				}
+			} else {
+				schedule = enqueue(new Change(from, to-from, null));
+				shadow.subList(from, to).clear();
+			}
+		}
+		changed(schedule);
+	}
+
+	public void removeAll() {
+		boolean schedule;
+		synchronized(lock) {
+			if(shadow.size() == 0) {
+				return;
+			}
+			schedule = enqueue(new Change(0, shadow.size(), null));
+			shadow.clear();
+		}
+		changed(schedule);
+	}
+
+	public void beginUpdate() {
+		if(SwingUtilities.isEventDispatchThread()) {
+			super.beginUpdate();
+			return;
+		}
+		int[] level = updateLevel.get();
+		if(level == null) {
+			level = new int[1];
+			updateLevel.set(level);
+		}
+		if(level[0]++ == 0) {
+			synchronized(lock) {
+				openUpdates++;
+			}
+		}
+	}
+
+	public void endUpdate() {
+		if(SwingUtilities.isEventDispatchThread()) {
+			super.endUpdate();
+			return;
+		}
+		int[] level = updateLevel.get();
+		if(level == null || level[0] == 0) {
+			throw new IllegalStateException("endUpdate() without beginUpdate()");
+		}
+		if(--level[0] > 0) {
+			return;
+		}
+		updateLevel.remove();
+		boolean schedule = false;
+		synchronized(lock) {
+			openUpdates--;
+			if(openUpdates == 0 && !queue.isEmpty() && !flushScheduled) {
+				flushScheduled = true;
+				schedule = true;
+			}
+		}
+		if(schedule) {
+			SwingUtilities.invokeLater(flushTask);
+		}
+	}
+
+	public boolean isUpdating() {
+		if(SwingUtilities.isEventDispatchThread()) {
+			return super.isUpdating();
+		}
+		int[] level = updateLevel.get();
+		return level != null && level[0] > 0;
+	}
+
+	/**
+	 * @return The actions including all changes that haven't reached the EDT yet.
+	 */
+	public Object[] getSnapshot() {
+		synchronized(lock) {
+			if(snapshot == null) {
+				snapshot = shadow.toArray();
+			}
+			return snapshot.clone();
+		}
+	}
+
+	// index -1 appends
+	private void insert(int index, List<Object> elements) {
+		if(elements.isEmpty()) {
+			return;
+		}
+		boolean edt = SwingUtilities.isEventDispatchThread();
+		boolean schedule;
+		synchronized(lock) {
+			int size = edt ? actionList.size() : shadow.size();
+			if(index == -1) {
+				index = shadow.size();
+			} else if(index < 0 || index > size) {
+				throw new IndexOutOfBoundsException("index "+index+", size "+size);
+			} else if(edt) {
+				index = shadowIndex(index, true);
+			}
+			schedule = enqueue(new Change(index, 0, elements));
+			shadow.addAll(index, elements);
+		}
+		changed(schedule);
+	}
+
+	/**
+	 * Translates an index of the state the EDT has seen into one of the shadow,
+	 * must hold the lock.
+	 * @param insertion <code>true</code> for a position between the elements.
+	 * @return The index or -1 if a queued change removes the element.
+	 */
+	private int shadowIndex(int index, boolean insertion) {
+		for(Change change : queue) {
+			if(index < change.index || (insertion && index == change.index)) {
+				continue;
+			}
+			if(index < change.index+change.removed) {
+				if(!insertion) {
+					return -1;
+				}
+				// where the removed elements have been
+				index = change.index;
+				continue;
+			}
+			index += (change.added == null ? 0 : change.added.size()) - change.removed;
+		}
+		return index;
+	}
+
+	// must hold the lock, returns true if a flush has to be scheduled
+	private boolean enqueue(Change change) {
+		snapshot = null;
+		Change last = queue.isEmpty() ? null : queue.get(queue.size()-1);
+		if(last != null && last.removed == 0 && change.removed == 0
+				&& change.index == last.index + last.added.size()) {
+			// appending to the previous insertion
+			if(!(last.added instanceof ArrayList)) {
+				last.added = new ArrayList<Object>(last.added);
+			}
+			last.added.addAll(change.added);
+		} else {
+			queue.add(change);
+		}
+		if(flushScheduled) {
+			return false;
+		}
+		flushScheduled = true;
+		return true;
+	}
+
+	private void changed(boolean schedule) {
+		if(SwingUtilities.isEventDispatchThread()) {
+			flush();
+		} else if(schedule) {
+			SwingUtilities.invokeLater(flushTask);
+		}
+	}
+
+	// applies the queued changes on the EDT
+	private void flush() {
+		List<Change> changes;
+		synchronized(lock) {
+			if(queue.isEmpty()) {
+				return;
+			}
+			if(openUpdates > 0) {
+				// the last update to end schedules the flush
+				flushScheduled = false;
+				return;
+			}
+			changes = queue;
+			queue = new ArrayList<Change>();
+			flushScheduled = false;
+		}
+		beginUpdate();
+		try {
+			for(Change change : changes) {
+				if(change.removed > 0) {
+					super.removeRange(change.index, change.index+change.removed);
+				}
+				if(change.added != null) {
+					insertAll(change.index, change.added);
+				}
+			}
+		} finally {
+			endUpdate();
+		}
+	}
+
+	/**
+	 * Removes some elements at the index and inserts others there.
+	 */
+	private static class Change {
+		private int index;
+		private int removed;
+		private List<Object> added;
+
+		public Change(int index, int removed, List<Object> added) {
+			this.index = index;
+			this.removed = removed;
+			this.added = added;
+		}
+	}
+}
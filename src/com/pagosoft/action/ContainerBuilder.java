@@ -16,6 +16,9 @@
 package com.pagosoft.action;
 
 import javax.swing.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
 import java.util.Stack;
 import java.util.ResourceBundle;
 import java.util.logging.Logger;
@@ -42,13 +45,17 @@ import java.util.logging.Logger;
  * You should keep a formatting the like one shown above to make your
  * code easy to read.
  *
+ * The names of the containers created by the builder are resolved in one
+ * batch as soon as the tree has been finished.
+ *
  * @author Patrick Gotthardt
  * @date 12.03.2006 15:49:52
  */
 public class ContainerBuilder {
 	private Stack stack;
-	private ResourceBundle bundle;
+	private ActionResourceProvider provider;
 	private ActionManager manager;
+	private List<AbstractSystemAction> unresolved;
 
 	public ContainerBuilder() {
 		this(null);
@@ -59,9 +66,10 @@ public class ContainerBuilder {
 	}
 
 	public ContainerBuilder(ResourceBundle bundle, ActionManager manager) {
-		this.bundle = bundle;
+		this.provider = new BundleResourceProvider(bundle);
 		this.manager = manager;
 		stack = new Stack<ActionContainer>();
+		unresolved = new ArrayList<AbstractSystemAction>();
 	}
 
 	public ContainerBuilder(ResourceBundle bundle, ActionContainer root) {
@@ -70,7 +78,9 @@ public class ContainerBuilder {
 	}
 
 	public ContainerBuilder container(String id) {
-		stack.push(new ActionBuilderContainer(id, bundle));
+		ActionBuilderContainer container = new ActionBuilderContainer(id, provider);
+		unresolved.add(container);
+		stack.push(container);
 		return this;
 	}
 
@@ -107,24 +117,71 @@ public class ContainerBuilder {
 		if(stack.size() > 1) {
 			ActionContainer child = (ActionContainer) stack.pop();
 			((ActionContainer)stack.peek()).add(child);
+			if(stack.size() == 1) {
+				resolve();
+			}
 		}
 		return this;
 	}
 
 	public ActionContainer getContainer() {
+		resolve();
 		return (ActionContainer)stack.pop();
 	}
 
+	private void resolve() {
+		if(!unresolved.isEmpty()) {
+			AbstractSystemAction.reloadResources(unresolved);
+			unresolved.clear();
+		}
+	}
+
 	private static class ActionBuilderContainer extends ActionContainer {
-		private ResourceBundle bundle;
+		private ActionResourceProvider provider;
 
-		public ActionBuilderContainer(String id, ResourceBundle bundle) {
+		public ActionBuilderContainer(String id, ActionResourceProvider provider) {
 			super();
+			this.provider = provider;
+			// the resources will be resolved by the builder
+			putValue(ID, id);
+		}
+
+		protected ActionResourceProvider getResourceProvider() {
+			return provider;
+		}
+	}
+
+	/**
+	 * Takes the strings from the bundle of the builder and the
+	 * configuration from the global provider.
+	 */
+	private static class BundleResourceProvider implements BatchActionResourceProvider {
+		private volatile ResourceBundle bundle;
+		private volatile Locale locale;
+
+		public BundleResourceProvider(ResourceBundle bundle) {
 			this.bundle = bundle;
-			setId(id);
+			locale = Locale.getDefault();
 		}
 
-		protected String getI18NString(String id) {
+		// loads the bundle again if the locale has been changed (see ActionLocale)
+		private ResourceBundle getBundle() {
+			ResourceBundle bundle = this.bundle;
+			Locale current = Locale.getDefault();
+			if(bundle != null && !current.equals(locale) && bundle.getBaseBundleName() != null) {
+				try {
+					bundle = ResourceBundle.getBundle(bundle.getBaseBundleName(), current);
+					this.bundle = bundle;
+				} catch(Exception e) {
+					Logger.getLogger("com.pagosoft.action.ContainerBuilder").warning("Could not load "+bundle.getBaseBundleName()+" for "+current);
+				}
+				locale = current;
+			}
+			return bundle;
+		}
+
+		public String getString(Object action, String id) {
+			ResourceBundle bundle = getBundle();
 			if(bundle == null) {
 				Logger.getLogger("com.pagosoft.action.ContainerBuilder").warning("No bundle specified");
 				return "";
@@ -136,5 +193,33 @@ public class ContainerBuilder {
 			}
 			return "";
 		}
+
+		public Object getConfig(Object action, String id) {
+			return AbstractSystemAction.getProvider().getConfig(action, id);
+		}
+
+		public boolean isThreadSafe() {
+			return AbstractSystemAction.getProvider().isThreadSafe();
+		}
+
+		public void resolve(ResourceBatch batch) {
+			ResourceBatch configs = new ResourceBatch();
+			int size = batch.size();
+			for(int i = 0; i < size; i++) {
+				if(batch.isConfig(i)) {
+					configs.requestConfig(batch.getOwner(i), batch.getKey(i));
+				} else {
+					batch.setValue(i, getString(batch.getOwner(i), batch.getKey(i)));
+				}
+			}
+			if(configs.size() > 0) {
+				BatchResourceProviderAdapter.resolve(AbstractSystemAction.getProvider(), configs);
+				for(int i = 0; i < size; i++) {
+					if(batch.isConfig(i)) {
+						batch.setValue(i, configs.getConfig(batch.getOwner(i), batch.getKey(i)));
+					}
+				}
+			}
+		}
 	}
 }
@@ -43,7 +43,7 @@ public class ContextSensitiveMenuProvider extends ActionMenuProvider {
 		if(obj instanceof ContextAwareAction) {
 			((ContextAwareAction)obj).addContext(context, menu);
 		}
-		ListModelBinder.install(menu, obj, this);
+		ListModelBinder.installMenu(menu, obj, this);
 		return menu;
 	}
 
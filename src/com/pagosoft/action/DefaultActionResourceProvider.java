@@ -15,48 +15,195 @@
  */
 package com.pagosoft.action;
 
-import java.util.HashMap;
-import java.util.ResourceBundle;
+import java.util.LinkedHashMap;
+import java.util.Locale;
 import java.util.Map;
+import java.util.ResourceBundle;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.logging.Logger;
 
 /**
  * <p>This is the default implementation of an {@link ActionResourceProvider}.</p>
  * <p>See {@link AbstractSystemAction} for an explaintation of its behaviour.</p>
  *
+ * <p>Bundles are cached per package and every string is cached per bundle,
+ * including the bundles and keys that don't exist. So each bundle is
+ * loaded only once.</p>
+ *
+ * <p>The bundles are loaded for the default locale. If it changes, they
+ * will be loaded again.</p>
+ *
+ * <p>Missing bundles and keys are reported once per locale, even if
+ * the cache is cleared. At most {@link #MAX_WARNINGS} are reported per
+ * minute, the number of the suppressed ones is reported with the next
+ * warning after that.</p>
+ *
+ * <p>This class is thread-safe.</p>
+ *
  * @see AbstractSystemAction
  * @author Patrick Gotthardt
  */
-public class DefaultActionResourceProvider implements ActionResourceProvider {
+public class DefaultActionResourceProvider implements BatchActionResourceProvider {
 	private static Logger logger = Logger.getLogger("com.pagosoft.action.DefaultActionResourceProvider");
-	private Map cache = new HashMap();
+	// marks keys that are not in the bundle, compared by identity
+	private static final String MISSING = new String("");
+	/**
+	 * The number of warnings that are logged per minute.
+	 */
+	public static final int MAX_WARNINGS = 20;
+	private static final long WARNING_INTERVAL = 60L*1000*1000*1000;
+	// the number of messages that are remembered to report each only once
+	private static final int MAX_REPORTED = 1024;
+
+	private ConcurrentMap<String, BundleEntry> cache = new ConcurrentHashMap<String, BundleEntry>();
+	private AtomicLong hitCount = new AtomicLong();
+	private AtomicLong missCount = new AtomicLong();
+	// the most recent warnings, guarded by itself
+	private final Map<String, Boolean> reported = new LinkedHashMap<String, Boolean>(16, 0.75f, true) {
+		private static final long serialVersionUID = 1L;
+
+		protected boolean removeEldestEntry(Map.Entry<String, Boolean> eldest) {
+			return size() > MAX_REPORTED;
+		}
+	};
+	private long intervalStart;
+	private int warnings;
+	private int suppressed;
 
 	public String getString(Object action, String key) {
-		Class clazz = action.getClass();
-		ResourceBundle bundle = null;
-		String bundleName = clazz.getPackage().getName()+".Bundle";
-		if(cache.containsKey(clazz)) {
-			bundle = (ResourceBundle)cache.get(bundleName);
-		} else {
+		return getBundle(action.getClass()).getString(key);
+	}
+
+	public Object getConfig(Object action, String id) {
+		return null;
+	}
+
+	public boolean isThreadSafe() {
+		return true;
+	}
+
+	public void resolve(ResourceBatch batch) {
+		int size = batch.size();
+		BundleEntry entry = null;
+		Class<?> entryClass = null;
+		for(int i = 0; i < size; i++) {
+			if(batch.isConfig(i)) {
+				batch.setValue(i, null);
+				continue;
+			}
+			// consecutive requests usually come from the same class
+			Class<?> clazz = batch.getOwner(i).getClass();
+			if(clazz != entryClass) {
+				entry = getBundle(clazz);
+				entryClass = clazz;
+			}
+			batch.setValue(i, entry.getString(batch.getKey(i)));
+		}
+	}
+
+	/**
+	 * @return The number of strings that have been taken from the cache.
+	 */
+	public long getHitCount() {
+		return hitCount.get();
+	}
+
+	/**
+	 * @return The number of strings that had to be looked up in their bundle.
+	 */
+	public long getMissCount() {
+		return missCount.get();
+	}
+
+	/**
+	 * Removes all bundles and strings from the cache, so they'll be loaded again.
+	 */
+	public void clearCache() {
+		cache.clear();
+	}
+
+	private BundleEntry getBundle(Class<?> clazz) {
+		String className = clazz.getName();
+		int index = className.lastIndexOf('.');
+		String packageName = index == -1 ? "" : className.substring(0, index);
+		Locale locale = Locale.getDefault();
+		BundleEntry entry = cache.get(packageName);
+		if(entry == null || !entry.locale.equals(locale)) {
+			String bundleName = index == -1 ? "Bundle" : packageName+".Bundle";
+			ResourceBundle bundle = null;
 			try {
-				bundle = ResourceBundle.getBundle(bundleName);
+				bundle = ResourceBundle.getBundle(bundleName, locale);
 			} catch(Exception e) {
-				logger.warning("No resource bundle for name '"+bundleName+"' found.");
+				warn("No resource bundle for name '"+bundleName+"' and locale '"+locale+"' found.");
 			}
-			cache.put(bundleName, bundle);
+			entry = new BundleEntry(bundleName, locale, bundle);
+			cache.put(packageName, entry);
 		}
-		if(bundle == null) {
-			return "";
+		return entry;
+	}
+
+	private void warn(String message) {
+		int suppressedBefore = 0;
+		synchronized(reported) {
+			if(reported.put(message, Boolean.TRUE) != null) {
+				return;
+			}
+			long now = System.nanoTime();
+			if(warnings == 0 || now-intervalStart >= WARNING_INTERVAL) {
+				suppressedBefore = suppressed;
+				intervalStart = now;
+				warnings = 0;
+				suppressed = 0;
+			}
+			if(warnings == MAX_WARNINGS) {
+				suppressed++;
+				return;
+			}
+			warnings++;
+			if(warnings == MAX_WARNINGS) {
+				message += " Further warnings will be suppressed for a minute.";
+			}
 		}
-		try {
-			return bundle.getString(key);
-		} catch(Exception e) {
-			logger.warning("No key '"+key+"' in bundle '"+bundleName+"' found.");
-			return "";
+		if(suppressedBefore > 0) {
+			logger.warning(suppressedBefore+" warnings about missing resources have been suppressed.");
 		}
+		logger.warning(message);
 	}
 
-	public Object getConfig(Object action, String id) {
-		return null;
+	private class BundleEntry {
+		private String name;
+		private Locale locale;
+		private ResourceBundle bundle;
+		private ConcurrentMap<String, String> strings;
+
+		public BundleEntry(String name, Locale locale, ResourceBundle bundle) {
+			this.name = name;
+			this.locale = locale;
+			this.bundle = bundle;
+			strings = new ConcurrentHashMap<String, String>();
+		}
+
+		public String getString(String key) {
+			if(bundle == null) {
+				hitCount.incrementAndGet();
+				return "";
+			}
+			String value = strings.get(key);
+			if(value != null) {
+				hitCount.incrementAndGet();
+			} else {
+				missCount.incrementAndGet();
+				try {
+					value = bundle.getString(key);
+				} catch(Exception e) {
+					warn("No key '"+key+"' in bundle '"+name+"' and locale '"+locale+"' found.");
+					value = MISSING;
+				}
+				strings.put(key, value);
+			}
+			return value == MISSING ? "" : value;
+		}
 	}
 }
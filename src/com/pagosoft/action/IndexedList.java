@@ -0,0 +1,170 @@
+/*
+ * Copyright 2005 Patrick Gotthardt
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.pagosoft.action;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.RandomAccess;
+
+/**
+ * <p>The list used by {@link ActionContainer}. It keeps a hash index of the
+ * position of every element, so {@link #indexOf} doesn't have to scan the list.
+ * The elements are compared by identity, so neither <code>equals</code> nor
+ * <code>hashCode</code> of the elements is used.</p>
+ * <p>The index maps each element to its first position. Inserting or removing
+ * in the middle of the list drops the entries from that position on, which
+ * costs as much as moving the elements behind it. The index is extended
+ * again by the lookups that need it, each of them only as far as the
+ * element it is looking for. Appending keeps it up to date in constant
+ * time.</p>
+ *
+ * @author Patrick Gotthardt
+ */
+class IndexedList extends AbstractList<Object> implements RandomAccess {
+	private ArrayList<Object> elements = new ArrayList<Object>();
+	// first position by element, there are only entries for the positions below indexedTo
+	private Map<Object, Integer> index = new IdentityHashMap<Object, Integer>();
+	private int indexedTo;
+
+	public Object get(int i) {
+		return elements.get(i);
+	}
+
+	public int size() {
+		return elements.size();
+	}
+
+	public boolean add(Object o) {
+		if(indexedTo == elements.size()) {
+			if(!index.containsKey(o)) {
+				index.put(o, Integer.valueOf(indexedTo));
+			}
+			indexedTo++;
+		}
+		elements.add(o);
+		modCount++;
+		return true;
+	}
+
+	public void add(int i, Object o) {
+		if(i == elements.size()) {
+			add(o);
+			return;
+		}
+		invalidate(i);
+		elements.add(i, o);
+		modCount++;
+	}
+
+	public boolean addAll(int i, Collection<?> c) {
+		if(i == elements.size()) {
+			for(Object o : c) {
+				add(o);
+			}
+			return !c.isEmpty();
+		}
+		invalidate(i);
+		boolean changed = elements.addAll(i, c);
+		modCount++;
+		return changed;
+	}
+
+	public Object set(int i, Object o) {
+		invalidate(i);
+		return elements.set(i, o);
+	}
+
+	public Object remove(int i) {
+		invalidate(i);
+		modCount++;
+		return elements.remove(i);
+	}
+
+	public boolean remove(Object o) {
+		int i = indexOf(o);
+		if(i == -1) {
+			return false;
+		}
+		remove(i);
+		return true;
+	}
+
+	protected void removeRange(int from, int to) {
+		if(from >= to) {
+			return;
+		}
+		invalidate(from);
+		elements.subList(from, to).clear();
+		modCount++;
+	}
+
+	public void clear() {
+		elements.clear();
+		index.clear();
+		indexedTo = 0;
+		modCount++;
+	}
+
+	public boolean contains(Object o) {
+		return indexOf(o) != -1;
+	}
+
+	public int indexOf(Object o) {
+		Integer first = index.get(o);
+		if(first != null) {
+			return first.intValue();
+		}
+		// o isn't part of the indexed positions, continue indexing until it is found
+		int size = elements.size();
+		while(indexedTo < size) {
+			Object element = elements.get(indexedTo);
+			if(!index.containsKey(element)) {
+				index.put(element, Integer.valueOf(indexedTo));
+			}
+			indexedTo++;
+			if(element == o) {
+				return indexedTo-1;
+			}
+		}
+		return -1;
+	}
+
+	public int lastIndexOf(Object o) {
+		for(int i = elements.size()-1; i >= 0; i--) {
+			if(elements.get(i) == o) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	// drops the entries of the positions from the position on, must be called before they change
+	private void invalidate(int from) {
+		for(int i = from; i < indexedTo; i++) {
+			Object o = elements.get(i);
+			Integer first = index.get(o);
+			if(first != null && first.intValue() >= from) {
+				index.remove(o);
+			}
+		}
+		if(from < indexedTo) {
+			indexedTo = from;
+		}
+	}
+}
@@ -15,6 +15,10 @@
  */
 package com.pagosoft.action;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
 /**
  * This subclass of {@link ActionContainer} allows its items to
  * be any kind of object. If you decide to use this, make sure
@@ -32,17 +36,39 @@ public class ItemContainer extends ActionContainer {
 		super(id);
 	}
 
+	// items are compared by equals, just like before, so they are searched
+	// linearly and may change their hashCode while they are in the container
+	protected List<Object> createActionList() {
+		return new ArrayList<Object>();
+	}
+
 	/**
 	 * Add an object to the end of the list. Subclasses are allowed
 	 * to change this behaviour.
 	 * @param act
 	 */
 	public void add(Object act) {
-		actionList.add(act);
-		int index = actionList.indexOf(act);
+		int index = append(act);
 		fireIntervalAdded(this, index, index);
 	}
 
+	/**
+	 * Add the objects to the end of the list, using a single event.
+	 * @param items
+	 */
+	public void addItems(Collection<?> items) {
+		appendAll(items);
+	}
+
+	/**
+	 * Add the objects at the specified index, using a single event.
+	 * @param index
+	 * @param items
+	 */
+	public void addItems(int index, Collection<?> items) {
+		insertAll(index, items);
+	}
+
 	/**
 	 * Add the object at the specified index.
 	 *
@@ -52,12 +78,20 @@ public class ItemContainer extends ActionContainer {
 	 * @param act
 	 */
 	public void add(int index, Object act) {
-		actionList.add(index, act);
+		elements().add(index, act);
 		fireIntervalAdded(this, index, index);
 	}
 
+	/**
+	 * Remove the (first occurrence of the) object from the container.
+	 * Nothing happens if the container doesn't contain the object.
+	 * @param act
+	 */
 	public void remove(Object act) {
-		remove(actionList.indexOf(act));
+		int index = actionList.indexOf(act);
+		if(index != -1) {
+			remove(index);
+		}
 	}
 
 	public int indexOf(Object act) {
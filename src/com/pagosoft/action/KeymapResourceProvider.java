@@ -0,0 +1,291 @@
+/*
+ * Copyright 2005 Patrick Gotthardt
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.pagosoft.action;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * <p>An {@link ActionResourceProvider} that overrides the accelerators of
+ * the actions with those of a user keymap. Everything else is taken from
+ * another provider.</p>
+ * <p>The keymap is a properties file that maps the ids of the actions to
+ * keystrokes (see {@link javax.swing.KeyStroke#getKeyStroke(String)}).
+ * An empty value removes the accelerator of the action:</p>
+ * <pre><code>open=control shift O
+ * print=</code></pre>
+ * <p>The keymap is answered through {@link #getConfig} as the
+ * <code>&lt;id&gt;.accel</code> config of {@link AbstractSystemAction}.</p>
+ * <pre><code>KeymapResourceProvider keymap = new KeymapResourceProvider(path);
+ * AbstractSystemAction.setProvider(keymap);
+ * keymap.startWatching();</code></pre>
+ * <p>While it is watching, changes of the file are picked up in the
+ * background. Only the actions whose bindings have changed are resolved
+ * again, the new accelerators are applied to them on the EDT.</p>
+ *
+ * <p>This class is thread-safe if its delegate is.</p>
+ *
+ * @author Patrick Gotthardt
+ */
+public class KeymapResourceProvider implements BatchActionResourceProvider {
+	private static final String ACCEL = ".accel";
+	// time to wait for further events after a change, editors often write a file in several steps
+	private static final long SETTLE_MILLIS = 100;
+
+	private static Logger logger = Logger.getLogger("com.pagosoft.action.KeymapResourceProvider");
+
+	private Path file;
+	private BatchActionResourceProvider delegate;
+	// keystroke by id, replaced as a whole on every reload
+	private volatile Map<String, String> keymap;
+	private Thread watcher;
+	private WatchService watchService;
+
+	/**
+	 * Uses a {@link DefaultActionResourceProvider} for everything but the keymap.
+	 * @param file
+	 */
+	public KeymapResourceProvider(Path file) {
+		this(file, new DefaultActionResourceProvider());
+	}
+
+	/**
+	 * Reads the keymap, a missing file is treated as an empty keymap.
+	 * @param file
+	 * @param delegate Used for the labels and the other configs.
+	 */
+	public KeymapResourceProvider(Path file, ActionResourceProvider delegate) {
+		this.file = file;
+		this.delegate = BatchResourceProviderAdapter.adapt(delegate);
+		keymap = read(file);
+	}
+
+	public String getString(Object action, String key) {
+		return delegate.getString(action, key);
+	}
+
+	public Object getConfig(Object action, String id) {
+		if(id.endsWith(ACCEL)) {
+			String keyStroke = keymap.get(id.substring(0, id.length()-ACCEL.length()));
+			if(keyStroke != null) {
+				return keyStroke;
+			}
+		}
+		return delegate.getConfig(action, id);
+	}
+
+	public boolean isThreadSafe() {
+		return delegate.isThreadSafe();
+	}
+
+	public void resolve(ResourceBatch batch) {
+		delegate.resolve(batch);
+		Map<String, String> map = keymap;
+		if(map.isEmpty()) {
+			return;
+		}
+		int size = batch.size();
+		for(int i = 0; i < size; i++) {
+			String key = batch.getKey(i);
+			if(batch.isConfig(i) && key.endsWith(ACCEL)) {
+				String keyStroke = map.get(key.substring(0, key.length()-ACCEL.length()));
+				if(keyStroke != null) {
+					batch.setValue(i, keyStroke);
+				}
+			}
+		}
+	}
+
+	/**
+	 * @param id
+	 * @return The keystroke of the keymap or <code>null</code> if the action isn't part of it.
+	 */
+	public String getKeyStroke(String id) {
+		return keymap.get(id);
+	}
+
+	/**
+	 * @return The current keymap, it can't be modified.
+	 */
+	public Map<String, String> getKeymap() {
+		return keymap;
+	}
+
+	public Path getFile() {
+		return file;
+	}
+
+	private static Map<String, String> read(Path file) {
+		Properties properties = new Properties();
+		try {
+			Reader in = Files.newBufferedReader(file, StandardCharsets.UTF_8);
+			try {
+				properties.load(in);
+			} finally {
+				in.close();
+			}
+		} catch(NoSuchFileException e) {
+			return Collections.emptyMap();
+		} catch(IOException e) {
+			logger.log(Level.WARNING, "Couldn't read keymap "+file, e);
+			return Collections.emptyMap();
+		}
+		Map<String, String> map = new HashMap<String, String>(properties.size() * 4 / 3 + 1);
+		for(String id : properties.stringPropertyNames()) {
+			map.put(id, properties.getProperty(id).trim());
+		}
+		return Collections.unmodifiableMap(map);
+	}
+
+	/**
+	 * <p>Reads the keymap again and updates the actions whose bindings have
+	 * changed. The file is read and the resources are resolved on the calling
+	 * thread, only the update of the actions happens on the EDT.</p>
+	 * @return A future that completes once the actions have been updated.
+	 */
+	public CompletableFuture<Void> reload() {
+		Map<String, String> newKeymap = read(file);
+		Set<String> changed;
+		synchronized(this) {
+			Map<String, String> oldKeymap = keymap;
+			changed = diff(oldKeymap, newKeymap);
+			keymap = newKeymap;
+		}
+		if(changed.isEmpty()) {
+			return CompletableFuture.completedFuture(null);
+		}
+
+		List<AbstractSystemAction> actions = new ArrayList<AbstractSystemAction>();
+		for(AbstractSystemAction action : AbstractSystemAction.getLiveActions()) {
+			if(changed.contains(action.getValue(AbstractSystemAction.ID))) {
+				actions.add(action);
+			}
+		}
+		logger.fine(changed.size()+" bindings of "+file+" changed, updating "+actions.size()+" actions");
+		return ActionLocale.reload(actions, new Executor() {
+			public void execute(Runnable command) {
+				command.run();
+			}
+		});
+	}
+
+	// the ids that have been added, removed or bound to another keystroke
+	private static Set<String> diff(Map<String, String> oldKeymap, Map<String, String> newKeymap) {
+		Set<String> changed = new HashSet<String>();
+		for(Map.Entry<String, String> entry : newKeymap.entrySet()) {
+			if(!entry.getValue().equals(oldKeymap.get(entry.getKey()))) {
+				changed.add(entry.getKey());
+			}
+		}
+		for(String id : oldKeymap.keySet()) {
+			if(!newKeymap.containsKey(id)) {
+				changed.add(id);
+			}
+		}
+		return changed;
+	}
+
+	/**
+	 * Starts a daemon thread that reloads the keymap when the file changes.
+	 * @throws IOException If the directory of the file can't be watched.
+	 */
+	public synchronized void startWatching() throws IOException {
+		if(watcher != null) {
+			return;
+		}
+		Path dir = file.toAbsolutePath().getParent();
+		final WatchService service = dir.getFileSystem().newWatchService();
+		dir.register(service, StandardWatchEventKinds.ENTRY_CREATE,
+				StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_DELETE);
+		watchService = service;
+		watcher = new Thread(new Runnable() {
+			public void run() {
+				watch(service);
+			}
+		}, "KeymapWatcher-"+file.getFileName());
+		watcher.setDaemon(true);
+		watcher.start();
+	}
+
+	/**
+	 * Stops watching the file.
+	 */
+	public synchronized void stopWatching() {
+		if(watcher == null) {
+			return;
+		}
+		try {
+			watchService.close();
+		} catch(IOException e) {
+			logger.log(Level.WARNING, "Couldn't stop watching "+file, e);
+		}
+		watcher = null;
+		watchService = null;
+	}
+
+	private void watch(WatchService service) {
+		Path name = file.getFileName();
+		try {
+			while(true) {
+				WatchKey key = service.take();
+				boolean modified = false;
+				// collect all events until the file has settled
+				while(key != null) {
+					for(WatchEvent<?> event : key.pollEvents()) {
+						if(event.kind() == StandardWatchEventKinds.OVERFLOW || name.equals(event.context())) {
+							modified = true;
+						}
+					}
+					key.reset();
+					key = service.poll(SETTLE_MILLIS, TimeUnit.MILLISECONDS);
+				}
+				if(modified) {
+					try {
+						reload();
+					} catch(RuntimeException e) {
+						logger.log(Level.WARNING, "Couldn't reload keymap "+file, e);
+					}
+				}
+			}
+		} catch(InterruptedException e) {
+			// stop watching
+		} catch(ClosedWatchServiceException e) {
+			// stopped
+		}
+	}
+}
@@ -0,0 +1,164 @@
+/*
+ * Copyright 2005 Patrick Gotthardt
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.pagosoft.action;
+
+import javax.swing.*;
+import java.util.*;
+
+/**
+ * <p>A map of the ActionMethods of an object that creates each Action
+ * the first time it is requested.</p>
+ * <p>The keys are known from the {@link ActionMethodInfo}s, so
+ * <code>size()</code>, <code>containsKey()</code> and the key set don't
+ * create any Actions. The entry set and the values create them one by one
+ * while they are iterated.</p>
+ * <p><code>put()</code> and <code>remove()</code> return the previous
+ * Action like any other map does, so they create it if it has never been
+ * requested.</p>
+ *
+ * @see ActionFactory#createLazyActionMap
+ * @author Patrick Gotthardt
+ */
+class LazyActionMap extends AbstractMap<String, Action> {
+	private Object target;
+	// values are either an ActionMethodInfo (not yet created) or an Action
+	private HashMap<String, Object> entries;
+	private Set<Map.Entry<String, Action>> entrySet;
+
+	public LazyActionMap(Object target, ActionMethodInfo[] methods) {
+		this.target = target;
+		entries = new HashMap<String, Object>(methods.length * 4 / 3 + 1);
+		for(int i = 0; i < methods.length; i++) {
+			entries.put(methods[i].getId(), methods[i]);
+		}
+	}
+
+	private Action materialize(String key, Object value) {
+		if(value instanceof ActionMethodInfo) {
+			Action act = ActionFactory.createAction(target, (ActionMethodInfo)value);
+			// replacing the value of an existing key is no structural
+			// modification, so this is safe while iterating
+			entries.put(key, act);
+			return act;
+		}
+		return (Action)value;
+	}
+
+	// the value that has just been replaced or removed
+	private Action previous(Object old) {
+		if(old instanceof ActionMethodInfo) {
+			return ActionFactory.createAction(target, (ActionMethodInfo)old);
+		}
+		return (Action)old;
+	}
+
+	public int size() {
+		return entries.size();
+	}
+
+	public boolean isEmpty() {
+		return entries.isEmpty();
+	}
+
+	public boolean containsKey(Object key) {
+		return entries.containsKey(key);
+	}
+
+	public boolean containsValue(Object value) {
+		// Actions that haven't been created yet can't be equal to anything
+		return value instanceof Action && entries.containsValue(value);
+	}
+
+	public Action get(Object key) {
+		Object value = entries.get(key);
+		return value == null ? null : materialize((String)key, value);
+	}
+
+	public Action put(String key, Action value) {
+		return previous(entries.put(key, value));
+	}
+
+	public Action remove(Object key) {
+		return previous(entries.remove(key));
+	}
+
+	public void clear() {
+		entries.clear();
+	}
+
+	public Set<String> keySet() {
+		return entries.keySet();
+	}
+
+	public Set<Map.Entry<String, Action>> entrySet() {
+		if(entrySet == null) {
+			entrySet = new EntrySet();
+		}
+		return entrySet;
+	}
+
+	private class EntrySet extends AbstractSet<Map.Entry<String, Action>> {
+		public int size() {
+			return entries.size();
+		}
+
+		public void clear() {
+			entries.clear();
+		}
+
+		public Iterator<Map.Entry<String, Action>> iterator() {
+			final Iterator<Map.Entry<String, Object>> it = entries.entrySet().iterator();
+			return new Iterator<Map.Entry<String, Action>>() {
+				public boolean hasNext() {
+					return it.hasNext();
+				}
+
+				public Map.Entry<String, Action> next() {
+					final Map.Entry<String, Object> entry = it.next();
+					return new Map.Entry<String, Action>() {
+						public String getKey() {
+							return entry.getKey();
+						}
+
+						public Action getValue() {
+							return materialize(entry.getKey(), entry.getValue());
+						}
+
+						public Action setValue(Action value) {
+							return previous(entry.setValue(value));
+						}
+
+						public boolean equals(Object o) {
+							if(!(o instanceof Map.Entry)) {
+								return false;
+							}
+							Map.Entry<?, ?> e = (Map.Entry<?, ?>)o;
+							return getKey().equals(e.getKey()) && getValue().equals(e.getValue());
+						}
+
+						public int hashCode() {
+							return getKey().hashCode() ^ getValue().hashCode();
+						}
+					};
+				}
+
+				public void remove() {
+					it.remove();
+				}
+			};
+		}
+	}
+}
@@ -0,0 +1,360 @@
+/*
+ * Copyright 2005 Patrick Gotthardt
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.pagosoft.action;
+
+import javax.swing.*;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Predicate;
+
+/**
+ * <p>An {@link ActionContainer} that orders its actions by how often and
+ * how recently they have been used, for "frequent commands" menus and
+ * toolbars.</p>
+ * <p>Every use adds to the score of an action, the older a use gets the less
+ * it counts: after one half-life it counts half as much. Actions with the same
+ * score keep the order in which they were added.</p>
+ * <p>The container doesn't notice when an action is performed, call
+ * {@link #recordUse} for that, e.g. from <code>actionPerformed</code> or an
+ * <code>ActionListener</code> of the buttons.</p>
+ * <pre><code>RankedActionContainer frequent = new RankedActionContainer("frequent", RankedActionContainer.DAY);
+ * frequent.setVisibleCount(10);
+ * frequent.addAll(catalog);
+ * ...
+ * frequent.recordUse(action);</code></pre>
+ *
+ * <p>A use costs O(log n): the actions are kept in a balanced tree that
+ * finds the old and the new position of the action and moves it without
+ * shifting the others. If the position changes, the listeners are told
+ * about the removal of the action at its old position and the insertion
+ * at the new one. With
+ * {@link #setVisibleCount} only the best actions are part of the model.</p>
+ *
+ * <p>The index passed to {@link #add(int, Action)} is ignored and the same
+ * action can't be added twice.</p>
+ *
+ * @author Patrick Gotthardt
+ */
+public class RankedActionContainer extends ActionContainer {
+	public static final long HOUR = 60L * 60 * 1000;
+	public static final long DAY = 24 * HOUR;
+
+	// the scores are relative to the epoch and grow with exp(lambda * (time - epoch)),
+	// they are scaled back before they could overflow
+	private static final double MAX_EXPONENT = 200;
+
+	private static final long serialVersionUID = 1L;
+
+	private Map<Object, Rank> ranks = new IdentityHashMap<Object, Rank>();
+	private double lambda;
+	private long epoch;
+	private long nextSeq;
+	private int visibleCount = Integer.MAX_VALUE;
+
+	/**
+	 * Uses a half-life of one day.
+	 */
+	public RankedActionContainer() {
+		this(null, DAY);
+	}
+
+	/**
+	 * @param id
+	 * @param halfLife The time in milliseconds after which a use counts half as much.
+	 */
+	public RankedActionContainer(String id, long halfLife) {
+		super(id);
+		if(halfLife <= 0) {
+			throw new IllegalArgumentException("halfLife must be positive");
+		}
+		lambda = Math.log(2) / halfLife;
+		epoch = currentTime();
+	}
+
+	protected List<Object> createActionList() {
+		return new TreeList();
+	}
+
+	/**
+	 * @return The current time in milliseconds.
+	 */
+	protected long currentTime() {
+		return System.currentTimeMillis();
+	}
+
+	/**
+	 * Only the first actions will be part of the model.
+	 * @param count
+	 */
+	public void setVisibleCount(int count) {
+		if(count < 0) {
+			throw new IllegalArgumentException("count must not be negative");
+		}
+		int oldSize = getSize();
+		visibleCount = count;
+		int newSize = getSize();
+		if(newSize > oldSize) {
+			fireIntervalAdded(this, oldSize, newSize-1);
+		} else if(newSize < oldSize) {
+			fireIntervalRemoved(this, newSize, oldSize-1);
+		}
+	}
+
+	public int getVisibleCount() {
+		return visibleCount;
+	}
+
+	/**
+	 * @return The number of actions including those that aren't visible.
+	 */
+	public int getActionCount() {
+		return actionList.size();
+	}
+
+	public int getSize() {
+		return Math.min(visibleCount, actionList.size());
+	}
+
+	/**
+	 * Adds the action with a score of zero, behind all actions with the same score.
+	 * @param act
+	 */
+	public void add(Action act) {
+		if(ranks.containsKey(act)) {
+			return;
+		}
+		Rank rank = new Rank(nextSeq++);
+		ranks.put(act, rank);
+		insertAt(findPosition(rank), act);
+	}
+
+	/**
+	 * Same as {@link #add(Action)}, the position depends on the rank.
+	 */
+	public void add(int index, Action act) {
+		add(act);
+	}
+
+	public void addAll(final Collection<? extends Action> actions) {
+		batch(new Runnable() {
+			public void run() {
+				for(Action act : actions) {
+					add(act);
+				}
+			}
+		});
+	}
+
+	public void addAll(int index, Collection<? extends Action> actions) {
+		addAll(actions);
+	}
+
+	public void setActions(final Action[] act) {
+		batch(new Runnable() {
+			public void run() {
+				removeAll();
+				for(int i = 0; i < act.length; i++) {
+					add(act[i]);
+				}
+			}
+		});
+	}
+
+	public void remove(Action act) {
+		Rank rank = ranks.get(act);
+		if(rank != null) {
+			int index = find(rank);
+			ranks.remove(act);
+			removeAt(index);
+		}
+	}
+
+	public void remove(int index) {
+		if(index >= getSize()) {
+			throw new IndexOutOfBoundsException("index "+index+", size "+getSize());
+		}
+		ranks.remove(actionList.get(index));
+		removeAt(index);
+	}
+
+	public void removeRange(final int from, final int to) {
+		if(from > to || to > getSize()) {
+			throw new IndexOutOfBoundsException("from "+from+", to "+to+", size "+getSize());
+		}
+		batch(new Runnable() {
+			public void run() {
+				for(int i = to-1; i >= from; i--) {
+					remove(i);
+				}
+			}
+		});
+	}
+
+	public void removeAll() {
+		int size = getSize();
+		actionList.clear();
+		ranks.clear();
+		if(size > 0) {
+			fireIntervalRemoved(this, 0, size-1);
+		}
+	}
+
+	/**
+	 * @param act
+	 * @return The index of the action or -1 if it isn't (visibly) part of this container.
+	 */
+	public int indexOf(Action act) {
+		Rank rank = ranks.get(act);
+		if(rank == null) {
+			return -1;
+		}
+		int index = find(rank);
+		return index < getSize() ? index : -1;
+	}
+
+	/**
+	 * Counts a use of the action and moves it to its new position.
+	 * @param action
+	 */
+	public void recordUse(Object action) {
+		Rank rank = ranks.get(action);
+		if(rank == null) {
+			return;
+		}
+		double exponent = (currentTime() - epoch) * lambda;
+		if(exponent > MAX_EXPONENT) {
+			// this may reorder the actions, so look for the action afterwards
+			renormalize();
+			exponent = 0;
+		}
+		int oldIndex = find(rank);
+		rank.score += Math.exp(exponent);
+		// the score only grows, so the action can only move up
+		int newIndex = findPosition(rank);
+		if(newIndex != oldIndex) {
+			move(oldIndex, newIndex);
+		}
+	}
+
+	/**
+	 * @param action
+	 * @return The current score of the action, every use counts 1 when it happens.
+	 */
+	public double getScore(Object action) {
+		Rank rank = ranks.get(action);
+		if(rank == null) {
+			return 0;
+		}
+		return rank.score * Math.exp(-(currentTime() - epoch) * lambda);
+	}
+
+	// moves the epoch to now, which scales all scores
+	private void renormalize() {
+		long now = currentTime();
+		double factor = Math.exp(-(now - epoch) * lambda);
+		for(Rank rank : ranks.values()) {
+			rank.score *= factor;
+		}
+		epoch = now;
+
+		// scores that were almost equal (or too small to matter) might have become equal
+		Object[] visible = actionList.subList(0, getSize()).toArray();
+		Collections.sort(elements(), new Comparator<Object>() {
+			public int compare(Object a, Object b) {
+				Rank rankA = ranks.get(a);
+				Rank rankB = ranks.get(b);
+				return rankA == rankB ? 0 : before(rankA, rankB) ? -1 : 1;
+			}
+		});
+		for(int i = 0; i < visible.length; i++) {
+			if(visible[i] != actionList.get(i)) {
+				fireContentsChanged(this, i, visible.length-1);
+				break;
+			}
+		}
+	}
+
+	private void insertAt(int index, Object element) {
+		int limit = visibleCount;
+		int oldSize = actionList.size();
+		elements().add(index, element);
+		if(index < limit) {
+			if(oldSize >= limit) {
+				// the last visible action is pushed out
+				fireIntervalRemoved(this, limit-1, limit-1);
+			}
+			fireIntervalAdded(this, index, index);
+		}
+	}
+
+	private void removeAt(int index) {
+		int limit = visibleCount;
+		actionList.remove(index);
+		if(index < limit) {
+			fireIntervalRemoved(this, index, index);
+			if(actionList.size() >= limit) {
+				// the first hidden action moves up
+				fireIntervalAdded(this, limit-1, limit-1);
+			}
+		}
+	}
+
+	// newIndex < oldIndex
+	private void move(int oldIndex, int newIndex) {
+		int limit = visibleCount;
+		elements().add(newIndex, actionList.remove(oldIndex));
+		if(newIndex >= limit) {
+			return;
+		}
+		fireIntervalRemoved(this, Math.min(oldIndex, limit-1), Math.min(oldIndex, limit-1));
+		fireIntervalAdded(this, newIndex, newIndex);
+	}
+
+	// the index of the ranked action
+	private int find(Rank rank) {
+		int index = findPosition(rank);
+		if(index == actionList.size() || ranks.get(actionList.get(index)) != rank) {
+			throw new IllegalStateException("Action not found, the order is broken");
+		}
+		return index;
+	}
+
+	// the first index whose action doesn't rank before the rank
+	private int findPosition(final Rank rank) {
+		return ((TreeList)actionList).lowerBound(new Predicate<Object>() {
+			public boolean test(Object action) {
+				return before(ranks.get(action), rank);
+			}
+		});
+	}
+
+	private static boolean before(Rank a, Rank b) {
+		return a.score > b.score || (a.score == b.score && a.seq < b.seq);
+	}
+
+	private static class Rank {
+		private double score;
+		private long seq;
+
+		public Rank(long seq) {
+			this.seq = seq;
+		}
+	}
+}
@@ -0,0 +1,159 @@
+/*
+ * Copyright 2005 Patrick Gotthardt
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.pagosoft.action;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * <p>A set of strings and configuration values that should be resolved
+ * by a {@link BatchActionResourceProvider} in one call.</p>
+ * <p>Every request consists of the object the resource is requested for
+ * (the same object that would be passed to
+ * {@link ActionResourceProvider#getString}) and the key. Requesting the same
+ * resource twice only adds it once.</p>
+ * <p>Providers iterate over the requests using {@link #size} and the
+ * index-based getters and store the results using {@link #setValue}.</p>
+ *
+ * @see AbstractSystemAction#reloadResources(java.util.Collection)
+ * @author Patrick Gotthardt
+ */
+public class ResourceBatch {
+	private List<Request> requests;
+	private Map<Request, Request> index;
+
+	public ResourceBatch() {
+		requests = new ArrayList<Request>();
+		index = new HashMap<Request, Request>();
+	}
+
+	/**
+	 * Request a string as returned by {@link ActionResourceProvider#getString}.
+	 * @param owner
+	 * @param key
+	 */
+	public void requestString(Object owner, String key) {
+		request(new Request(owner, key, false));
+	}
+
+	/**
+	 * Request a value as returned by {@link ActionResourceProvider#getConfig}.
+	 * @param owner
+	 * @param id
+	 */
+	public void requestConfig(Object owner, String id) {
+		request(new Request(owner, id, true));
+	}
+
+	private void request(Request request) {
+		if(!index.containsKey(request)) {
+			index.put(request, request);
+			requests.add(request);
+		}
+	}
+
+	/**
+	 * @return The number of requests.
+	 */
+	public int size() {
+		return requests.size();
+	}
+
+	public Object getOwner(int i) {
+		return requests.get(i).owner;
+	}
+
+	public String getKey(int i) {
+		return requests.get(i).key;
+	}
+
+	/**
+	 * @param i
+	 * @return <code>true</code> if a config value has been requested, <code>false</code> for a string.
+	 */
+	public boolean isConfig(int i) {
+		return requests.get(i).config;
+	}
+
+	public Object getValue(int i) {
+		return requests.get(i).value;
+	}
+
+	public void setValue(int i, Object value) {
+		Request request = requests.get(i);
+		request.value = value;
+		request.resolved = true;
+	}
+
+	/**
+	 * @param owner
+	 * @param key
+	 * @return <code>true</code> if the string has been requested and resolved.
+	 */
+	public boolean hasString(Object owner, String key) {
+		Request request = index.get(new Request(owner, key, false));
+		return request != null && request.resolved;
+	}
+
+	public String getString(Object owner, String key) {
+		Request request = index.get(new Request(owner, key, false));
+		return request == null ? null : (String)request.value;
+	}
+
+	/**
+	 * @param owner
+	 * @param id
+	 * @return <code>true</code> if the config value has been requested and resolved.
+	 */
+	public boolean hasConfig(Object owner, String id) {
+		Request request = index.get(new Request(owner, id, true));
+		return request != null && request.resolved;
+	}
+
+	public Object getConfig(Object owner, String id) {
+		Request request = index.get(new Request(owner, id, true));
+		return request == null ? null : request.value;
+	}
+
+	private static class Request {
+		private Object owner;
+		private String key;
+		private boolean config;
+		private Object value;
+		private boolean resolved;
+
+		public Request(Object owner, String key, boolean config) {
+			this.owner = owner;
+			this.key = key;
+			this.config = config;
+		}
+
+		public boolean equals(Object o) {
+			if(!(o instanceof Request)) {
+				return false;
+			}
+			Request r = (Request)o;
+			// owners are compared by identity, just like the actions themselves
+			return owner == r.owner && config == r.config && key.equals(r.key);
+		}
+
+		public int hashCode() {
+			return System.identityHashCode(owner) * 31 + key.hashCode() + (config ? 1 : 0);
+		}
+	}
+}
@@ -0,0 +1,166 @@
+/*
+ * Copyright 2005 Patrick Gotthardt
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.pagosoft.action;
+
+import java.util.AbstractList;
+import java.util.Random;
+import java.util.function.Predicate;
+
+/**
+ * <p>The list used by {@link RankedActionContainer}. It is a balanced tree
+ * (a treap) that knows the size of every subtree, so getting, inserting and
+ * removing at an index take O(log n) instead of moving all elements behind
+ * the index.</p>
+ * <p>If the elements are sorted, {@link #lowerBound} finds a position in
+ * O(log n) as well.</p>
+ *
+ * @author Patrick Gotthardt
+ */
+class TreeList extends AbstractList<Object> {
+	private Node root;
+	private Random random = new Random();
+
+	public Object get(int i) {
+		return node(i).value;
+	}
+
+	public Object set(int i, Object o) {
+		Node node = node(i);
+		Object old = node.value;
+		node.value = o;
+		return old;
+	}
+
+	public int size() {
+		return size(root);
+	}
+
+	public void add(int i, Object o) {
+		if(i < 0 || i > size()) {
+			throw new IndexOutOfBoundsException("index "+i+", size "+size());
+		}
+		Node[] parts = split(root, i);
+		root = merge(merge(parts[0], new Node(o, random.nextInt())), parts[1]);
+		modCount++;
+	}
+
+	public Object remove(int i) {
+		if(i < 0 || i >= size()) {
+			throw new IndexOutOfBoundsException("index "+i+", size "+size());
+		}
+		Node[] parts = split(root, i);
+		Node[] rest = split(parts[1], 1);
+		root = merge(parts[0], rest[1]);
+		modCount++;
+		return rest[0].value;
+	}
+
+	public void clear() {
+		root = null;
+		modCount++;
+	}
+
+	/**
+	 * @param before <code>true</code> for a prefix of the list and <code>false</code>
+	 * 		for the rest.
+	 * @return The index of the first element for which the predicate is <code>false</code>.
+	 */
+	public int lowerBound(Predicate<Object> before) {
+		int index = 0;
+		Node node = root;
+		while(node != null) {
+			if(before.test(node.value)) {
+				index += size(node.left) + 1;
+				node = node.right;
+			} else {
+				node = node.left;
+			}
+		}
+		return index;
+	}
+
+	private Node node(int i) {
+		if(i < 0 || i >= size()) {
+			throw new IndexOutOfBoundsException("index "+i+", size "+size());
+		}
+		Node node = root;
+		while(true) {
+			int left = size(node.left);
+			if(i < left) {
+				node = node.left;
+			} else if(i == left) {
+				return node;
+			} else {
+				i -= left + 1;
+				node = node.right;
+			}
+		}
+	}
+
+	private static int size(Node node) {
+		return node == null ? 0 : node.size;
+	}
+
+	// splits the tree into the first count elements and the rest
+	private static Node[] split(Node node, int count) {
+		if(node == null) {
+			return new Node[2];
+		}
+		Node[] parts;
+		if(size(node.left) >= count) {
+			parts = split(node.left, count);
+			node.left = parts[1];
+			parts[1] = node;
+		} else {
+			parts = split(node.right, count - size(node.left) - 1);
+			node.right = parts[0];
+			parts[0] = node;
+		}
+		node.size = size(node.left) + size(node.right) + 1;
+		return parts;
+	}
+
+	// all elements of a come before those of b
+	private static Node merge(Node a, Node b) {
+		if(a == null) {
+			return b;
+		}
+		if(b == null) {
+			return a;
+		}
+		if(a.priority > b.priority) {
+			a.right = merge(a.right, b);
+			a.size = size(a.left) + size(a.right) + 1;
+			return a;
+		}
+		b.left = merge(a, b.left);
+		b.size = size(b.left) + size(b.right) + 1;
+		return b;
+	}
+
+	private static class Node {
+		private Object value;
+		private int priority;
+		private int size = 1;
+		private Node left;
+		private Node right;
+
+		public Node(Object value, int priority) {
+			this.value = value;
+			this.priority = priority;
+		}
+	}
+}
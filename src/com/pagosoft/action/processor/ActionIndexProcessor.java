@@ -0,0 +1,165 @@
+/*
+ * Copyright 2005 Patrick Gotthardt
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.pagosoft.action.processor;
+
+import com.pagosoft.action.ActionManager;
+
+import javax.annotation.processing.*;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.*;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.lang.model.util.Elements;
+import javax.tools.Diagnostic;
+import javax.tools.FileObject;
+import javax.tools.StandardLocation;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.*;
+
+/**
+ * <p>Writes the index read by
+ * {@link ActionManager#preload(ClassLoader, String)} to
+ * {@link ActionManager#INDEX_RESOURCE}.</p>
+ *
+ * <p>The index lists every public, non-abstract {@link javax.swing.Action}
+ * that {@link ActionManager#get} is able to create, that is every top level
+ * or static nested class with a public constructor without parameters.
+ * When only a part of the sources is recompiled, the entries of the existing
+ * index that still match are kept.</p>
+ *
+ * <p>Pass <code>-Apgsaction.index=false</code> to javac to turn it off.</p>
+ *
+ * <p>javac only calls processors for <code>"*"</code> in rounds with
+ * annotations that no other processor has claimed (or without any
+ * annotations). That's why {@link ActionMethodProcessor} doesn't claim
+ * {@link com.pagosoft.action.ActionMethod}.</p>
+ *
+ * @author Patrick Gotthardt
+ */
+@SupportedAnnotationTypes("*")
+@SupportedOptions(ActionIndexProcessor.OPTION)
+public class ActionIndexProcessor extends AbstractProcessor {
+	static final String OPTION = "pgsaction.index";
+	private static final String ACTION = "javax.swing.Action";
+
+	private Set<String> classes = new TreeSet<String>();
+
+	public SourceVersion getSupportedSourceVersion() {
+		return SourceVersion.latestSupported();
+	}
+
+	public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+		if("false".equals(processingEnv.getOptions().get(OPTION))) {
+			return false;
+		}
+		if(roundEnv.processingOver()) {
+			if(!classes.isEmpty()) {
+				write();
+			}
+			return false;
+		}
+		for(TypeElement type : ElementFilter.typesIn(roundEnv.getRootElements())) {
+			collect(type);
+		}
+		// never claim the annotations, other processors still need them
+		return false;
+	}
+
+	private void collect(TypeElement type) {
+		if(isPreloadable(type)) {
+			classes.add(processingEnv.getElementUtils().getBinaryName(type).toString());
+		}
+		for(TypeElement nested : ElementFilter.typesIn(type.getEnclosedElements())) {
+			if(nested.getModifiers().contains(Modifier.STATIC)) {
+				collect(nested);
+			}
+		}
+	}
+
+	private boolean isPreloadable(TypeElement type) {
+		TypeElement action = processingEnv.getElementUtils().getTypeElement(ACTION);
+		if(action == null || type.getKind() != ElementKind.CLASS) {
+			return false;
+		}
+		Set<Modifier> modifiers = type.getModifiers();
+		if(!modifiers.contains(Modifier.PUBLIC) || modifiers.contains(Modifier.ABSTRACT)) {
+			return false;
+		}
+		for(Element e = type.getEnclosingElement(); e instanceof TypeElement; e = e.getEnclosingElement()) {
+			if(!e.getModifiers().contains(Modifier.PUBLIC)) {
+				return false;
+			}
+		}
+		TypeMirror actionType = processingEnv.getTypeUtils().erasure(action.asType());
+		if(!processingEnv.getTypeUtils().isAssignable(processingEnv.getTypeUtils().erasure(type.asType()), actionType)) {
+			return false;
+		}
+		for(ExecutableElement constructor : ElementFilter.constructorsIn(type.getEnclosedElements())) {
+			if(constructor.getParameters().isEmpty() && constructor.getModifiers().contains(Modifier.PUBLIC)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private void write() {
+		Filer filer = processingEnv.getFiler();
+		readExisting();
+		try {
+			FileObject file = filer.createResource(StandardLocation.CLASS_OUTPUT, "", ActionManager.INDEX_RESOURCE);
+			PrintWriter out = new PrintWriter(file.openWriter());
+			try {
+				out.println("# Generated by "+ActionIndexProcessor.class.getName()+", do not edit.");
+				for(String name : classes) {
+					out.println(name);
+				}
+			} finally {
+				out.close();
+			}
+		} catch(IOException e) {
+			processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR,
+					"Could not write "+ActionManager.INDEX_RESOURCE+": "+e.getMessage());
+		}
+	}
+
+	// keeps the entries of classes that weren't compiled this time
+	private void readExisting() {
+		Elements elements = processingEnv.getElementUtils();
+		try {
+			FileObject file = processingEnv.getFiler().getResource(StandardLocation.CLASS_OUTPUT, "", ActionManager.INDEX_RESOURCE);
+			BufferedReader in = new BufferedReader(file.openReader(true));
+			try {
+				String line;
+				while((line = in.readLine()) != null) {
+					line = line.trim();
+					if(line.length() == 0 || line.startsWith("#") || classes.contains(line)) {
+						continue;
+					}
+					TypeElement type = elements.getTypeElement(line.replace('$', '.'));
+					if(type != null && isPreloadable(type)) {
+						classes.add(line);
+					}
+				}
+			} finally {
+				in.close();
+			}
+		} catch(IOException e) {
+			// there is no index yet
+		}
+	}
+}
@@ -0,0 +1,272 @@
+/*
+ * Copyright 2005 Patrick Gotthardt
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.pagosoft.action.processor;
+
+import javax.annotation.processing.*;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.*;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.Elements;
+import javax.lang.model.util.Types;
+import javax.tools.Diagnostic;
+import javax.tools.JavaFileObject;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.*;
+
+/**
+ * <p>Generates an {@link com.pagosoft.action.ActionMethodTable} for every class
+ * that declares {@link com.pagosoft.action.ActionMethod}s, so that
+ * {@link com.pagosoft.action.ActionFactory} doesn't have to scan it with
+ * reflection at runtime.</p>
+ *
+ * <p>It also reports annotations that would fail at runtime:</p>
+ * <ul>
+ * <li>two methods of the same class using the same id</li>
+ * <li>methods with <code>event=true</code> that don't take exactly one
+ * parameter an {@link java.awt.event.ActionEvent} can be passed to</li>
+ * <li>methods with <code>event=false</code> that take parameters</li>
+ * </ul>
+ *
+ * <p>The generated code calls the methods directly. Classes that declare
+ * private ActionMethods or are private themselves are skipped and will
+ * still be handled using reflection.</p>
+ *
+ * <p>The processor is registered in <code>META-INF/services</code>, so
+ * having PgsAction on the classpath of javac is enough to use it.</p>
+ *
+ * @author Patrick Gotthardt
+ */
+@SupportedAnnotationTypes(ActionMethodProcessor.ACTION_METHOD)
+public class ActionMethodProcessor extends AbstractProcessor {
+	static final String ACTION_METHOD = "com.pagosoft.action.ActionMethod";
+	private static final String ACTION_EVENT = "java.awt.event.ActionEvent";
+	private static final String TABLE_SUFFIX = "$$ActionMethodTable";
+
+	public SourceVersion getSupportedSourceVersion() {
+		return SourceVersion.latestSupported();
+	}
+
+	public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+		TypeElement annotation = processingEnv.getElementUtils().getTypeElement(ACTION_METHOD);
+		if(annotation == null) {
+			return false;
+		}
+
+		// group the methods by the class that declares them
+		Map<TypeElement, List<ExecutableElement>> classes = new LinkedHashMap<TypeElement, List<ExecutableElement>>();
+		for(Element element : roundEnv.getElementsAnnotatedWith(annotation)) {
+			if(element.getKind() != ElementKind.METHOD) {
+				continue;
+			}
+			TypeElement type = (TypeElement) element.getEnclosingElement();
+			List<ExecutableElement> methods = classes.get(type);
+			if(methods == null) {
+				methods = new ArrayList<ExecutableElement>();
+				classes.put(type, methods);
+			}
+			methods.add((ExecutableElement) element);
+		}
+
+		for(Map.Entry<TypeElement, List<ExecutableElement>> entry : classes.entrySet()) {
+			List<MethodInfo> infos = validate(entry.getKey(), entry.getValue());
+			if(infos != null && canGenerate(entry.getKey(), entry.getValue())) {
+				generate(entry.getKey(), infos);
+			}
+		}
+		// processors for "*" like the ActionIndexProcessor are only called
+		// in rounds with annotations that haven't been claimed
+		return false;
+	}
+
+	/**
+	 * Checks the annotations of one class.
+	 * @return The parsed annotations or <code>null</code> if there was an error.
+	 */
+	private List<MethodInfo> validate(TypeElement type, List<ExecutableElement> methods) {
+		Messager messager = processingEnv.getMessager();
+		Types types = processingEnv.getTypeUtils();
+		TypeMirror actionEvent = processingEnv.getElementUtils().getTypeElement(ACTION_EVENT).asType();
+
+		boolean valid = true;
+		Map<String, ExecutableElement> ids = new HashMap<String, ExecutableElement>();
+		List<MethodInfo> infos = new ArrayList<MethodInfo>();
+		for(ExecutableElement method : methods) {
+			AnnotationMirror mirror = getAnnotationMirror(method);
+			MethodInfo info = new MethodInfo(method);
+			info.id = getValue(mirror, "id", "");
+			info.icon = getValue(mirror, "icon", "");
+			info.label = getValue(mirror, "label", "");
+			info.event = getValue(mirror, "event", Boolean.FALSE).booleanValue();
+			if(info.id.length() == 0) {
+				info.id = method.getSimpleName().toString();
+			}
+
+			ExecutableElement other = ids.put(info.id, method);
+			if(other != null) {
+				messager.printMessage(Diagnostic.Kind.ERROR,
+						"Duplicate action id '"+info.id+"', already used by "+other.getSimpleName()+"()", method, mirror);
+				valid = false;
+			}
+
+			List<? extends VariableElement> parameters = method.getParameters();
+			if(info.event) {
+				if(parameters.size() != 1 || !types.isAssignable(actionEvent, parameters.get(0).asType())) {
+					messager.printMessage(Diagnostic.Kind.ERROR,
+							"ActionMethods with event=true must take exactly one parameter of type ActionEvent", method, mirror);
+					valid = false;
+				}
+			} else if(!parameters.isEmpty()) {
+				messager.printMessage(Diagnostic.Kind.ERROR,
+						"ActionMethods must not take parameters unless event=true is specified", method, mirror);
+				valid = false;
+			}
+			infos.add(info);
+		}
+		return valid ? infos : null;
+	}
+
+	private boolean canGenerate(TypeElement type, List<ExecutableElement> methods) {
+		for(ExecutableElement method : methods) {
+			if(method.getModifiers().contains(Modifier.PRIVATE)) {
+				note(type, "has private ActionMethods");
+				return false;
+			}
+		}
+		for(Element e = type; e instanceof TypeElement; e = e.getEnclosingElement()) {
+			if(e.getModifiers().contains(Modifier.PRIVATE)) {
+				note(type, "is private");
+				return false;
+			}
+			NestingKind nesting = ((TypeElement)e).getNestingKind();
+			if(nesting == NestingKind.ANONYMOUS || nesting == NestingKind.LOCAL) {
+				note(type, "is a local class");
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private void note(TypeElement type, String reason) {
+		processingEnv.getMessager().printMessage(Diagnostic.Kind.NOTE,
+				type.getQualifiedName()+" "+reason+", its ActionMethods will be found using reflection", type);
+	}
+
+	private void generate(TypeElement type, List<MethodInfo> infos) {
+		Elements elements = processingEnv.getElementUtils();
+		String packageName = elements.getPackageOf(type).getQualifiedName().toString();
+		String binaryName = elements.getBinaryName(type).toString();
+		String simpleName = (packageName.length() == 0 ? binaryName : binaryName.substring(packageName.length()+1)) + TABLE_SUFFIX;
+		String typeName = type.getQualifiedName().toString();
+
+		try {
+			JavaFileObject file = processingEnv.getFiler().createSourceFile(
+					packageName.length() == 0 ? simpleName : packageName+"."+simpleName, type);
+			PrintWriter out = new PrintWriter(file.openWriter());
+			try {
+				if(packageName.length() > 0) {
+					out.println("package "+packageName+";");
+					out.println();
+				}
+				out.println("/**");
+				out.println(" * ActionMethods of {@link "+typeName+"}.");
+				out.println(" * Generated by "+ActionMethodProcessor.class.getName()+", do not edit.");
+				out.println(" */");
+				out.println("public final class "+simpleName+" implements com.pagosoft.action.ActionMethodTable {");
+				out.println("\tpublic com.pagosoft.action.ActionMethodInfo[] getActionMethods() {");
+				out.println("\t\treturn new com.pagosoft.action.ActionMethodInfo[] {");
+				for(MethodInfo info : infos) {
+					out.println("\t\t\tnew com.pagosoft.action.ActionMethodInfo("
+							+literal(info.id)+", "+literal(info.icon)+", "+literal(info.label)+",");
+					out.println("\t\t\t\t\tnew com.pagosoft.action.ActionInvoker() {");
+					out.println("\t\t\t\tpublic void invoke(Object target, java.awt.event.ActionEvent e) throws Exception {");
+					out.print("\t\t\t\t\t");
+					if(info.method.getModifiers().contains(Modifier.STATIC)) {
+						out.print(typeName);
+					} else {
+						out.print("(("+typeName+") target)");
+					}
+					out.print("."+info.method.getSimpleName());
+					out.println(info.event ? "(e);" : "();");
+					out.println("\t\t\t\t}");
+					out.println("\t\t\t}),");
+				}
+				out.println("\t\t};");
+				out.println("\t}");
+				out.println("}");
+			} finally {
+				out.close();
+			}
+		} catch(IOException e) {
+			processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR,
+					"Could not generate the ActionMethodTable: "+e.getMessage(), type);
+		}
+	}
+
+	private static AnnotationMirror getAnnotationMirror(ExecutableElement method) {
+		for(AnnotationMirror mirror : method.getAnnotationMirrors()) {
+			if(((TypeElement)mirror.getAnnotationType().asElement()).getQualifiedName().contentEquals(ACTION_METHOD)) {
+				return mirror;
+			}
+		}
+		return null;
+	}
+
+	@SuppressWarnings("unchecked")
+	private static <T> T getValue(AnnotationMirror mirror, String name, T defaultValue) {
+		for(Map.Entry<? extends ExecutableElement, ? extends AnnotationValue> entry : mirror.getElementValues().entrySet()) {
+			if(entry.getKey().getSimpleName().contentEquals(name)) {
+				return (T) entry.getValue().getValue();
+			}
+		}
+		return defaultValue;
+	}
+
+	private static String literal(String value) {
+		StringBuilder sb = new StringBuilder(value.length()+2);
+		sb.append('"');
+		for(int i = 0; i < value.length(); i++) {
+			char c = value.charAt(i);
+			switch(c) {
+				case '"': sb.append("\\\""); break;
+				case '\\': sb.append("\\\\"); break;
+				case '\n': sb.append("\\n"); break;
+				case '\r': sb.append("\\r"); break;
+				case '\t': sb.append("\\t"); break;
+				default:
+					if(c < 0x20 || c > 0x7e) {
+						sb.append(String.format("\\u%04x", Integer.valueOf(c)));
+					} else {
+						sb.append(c);
+					}
+			}
+		}
+		sb.append('"');
+		return sb.toString();
+	}
+
+	private static class MethodInfo {
+		private ExecutableElement method;
+		private String id;
+		private String icon;
+		private String label;
+		private boolean event;
+
+		public MethodInfo(ExecutableElement method) {
+			this.method = method;
+		}
+	}
+}
@@ -0,0 +1,457 @@
+/*
+ * Copyright 2005 Patrick Gotthardt
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.pagosoft.action.tools;
+
+import com.pagosoft.action.AbstractSystemAction;
+import com.pagosoft.action.ActionMethod;
+import com.pagosoft.action.ActionResourceProvider;
+import com.pagosoft.action.CompiledBundle;
+
+import javax.swing.*;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.ByteBuffer;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+
+/**
+ * <p>Compiles the <code>Bundle*.properties</code> used by the
+ * {@link com.pagosoft.action.DefaultActionResourceProvider} into Java classes
+ * that are read by the {@link com.pagosoft.action.CompiledResourceProvider}.</p>
+ * <p>Every <code>Bundle_&lt;locale&gt;.properties</code> becomes a
+ * <code>Bundle_&lt;locale&gt;$$Compiled</code> class in the same package
+ * that already contains the keys of its parents. The labels are split
+ * into name, mnemonic and keystroke at build time.</p>
+ * <pre><code>java -cp pgsaction.jar:build/classes com.pagosoft.action.tools.BundleCompiler
+ *     -d build/generated -check build/classes src</code></pre>
+ * <p>Options:</p>
+ * <ul>
+ * <li><code>-d &lt;dir&gt;</code> the directory for the generated sources (default: the current directory)</li>
+ * <li><code>-check &lt;dir&gt;</code> report the labels that are missing for the
+ * {@link ActionMethod}s in this class directory. Their ids are taken from the
+ * annotation, no code of the application is run.</li>
+ * <li><code>-instantiate</code> also check the {@link AbstractSystemAction}s of the
+ * class directory. Their ids are only known at runtime, so those with a public
+ * no-arg constructor are created to learn the resources they request. This runs
+ * the constructors of your actions at build time.</li>
+ * <li><code>-failOnMissing</code> exit with status 2 if labels are missing</li>
+ * </ul>
+ * <p>Compile the generated sources together with your application.</p>
+ *
+ * @author Patrick Gotthardt
+ */
+public class BundleCompiler {
+	private static final String BUNDLE = "Bundle";
+	private static final String EXTENSION = ".properties";
+	// number of keys initialized by one generated method, keeps the methods below the 64k limit
+	private static final int KEYS_PER_METHOD = 500;
+
+	// merged bundles by package and locale ("" for the base bundle)
+	private Map<String, Map<String, Properties>> bundles = new TreeMap<String, Map<String, Properties>>();
+
+	public static void main(String[] args) throws Exception {
+		File out = new File(".");
+		File check = null;
+		boolean instantiate = false;
+		boolean failOnMissing = false;
+		List<File> sources = new ArrayList<File>();
+		for(int i = 0; i < args.length; i++) {
+			if("-d".equals(args[i]) && i+1 < args.length) {
+				out = new File(args[++i]);
+			} else if("-check".equals(args[i]) && i+1 < args.length) {
+				check = new File(args[++i]);
+			} else if("-instantiate".equals(args[i])) {
+				instantiate = true;
+			} else if("-failOnMissing".equals(args[i])) {
+				failOnMissing = true;
+			} else {
+				sources.add(new File(args[i]));
+			}
+		}
+		if(sources.isEmpty()) {
+			System.err.println("Usage: BundleCompiler [-d <output dir>] [-check <class dir> [-instantiate]] [-failOnMissing] <source dir>...");
+			System.exit(1);
+		}
+
+		BundleCompiler compiler = new BundleCompiler();
+		for(File source : sources) {
+			compiler.addDirectory(source, "");
+		}
+		int count = compiler.write(out);
+		System.out.println("Compiled "+count+" bundles into "+out);
+
+		if(check != null) {
+			int missing = compiler.check(check, instantiate);
+			if(missing > 0) {
+				System.err.println(missing+" labels are missing.");
+				if(failOnMissing) {
+					System.exit(2);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Adds all bundles in the directory and its subdirectories.
+	 * @param dir
+	 * @param packageName The package of the directory (empty for the default package).
+	 * @throws IOException
+	 */
+	public void addDirectory(File dir, String packageName) throws IOException {
+		File[] files = dir.listFiles();
+		if(files == null) {
+			throw new IOException("Can't read directory "+dir);
+		}
+		for(File file : files) {
+			String name = file.getName();
+			if(file.isDirectory()) {
+				addDirectory(file, packageName.length() == 0 ? name : packageName+"."+name);
+			} else if(name.startsWith(BUNDLE) && name.endsWith(EXTENSION)) {
+				String locale = name.substring(BUNDLE.length(), name.length()-EXTENSION.length());
+				if(locale.length() == 0 || locale.charAt(0) == '_') {
+					add(packageName, locale.length() == 0 ? "" : locale.substring(1), file);
+				}
+			}
+		}
+	}
+
+	/**
+	 * @param packageName
+	 * @param locale The locale, e.g. <code>de_DE</code> or empty for the base bundle.
+	 * @param file
+	 * @throws IOException
+	 */
+	public void add(String packageName, String locale, File file) throws IOException {
+		Map<String, Properties> locales = bundles.get(packageName);
+		if(locales == null) {
+			locales = new TreeMap<String, Properties>();
+			bundles.put(packageName, locales);
+		}
+		locales.put(locale, load(file));
+	}
+
+	// like PropertyResourceBundle: UTF-8 if possible, ISO-8859-1 otherwise
+	private static Properties load(File file) throws IOException {
+		byte[] data = Files.readAllBytes(file.toPath());
+		Properties properties = new Properties();
+		try {
+			StandardCharsets.UTF_8.newDecoder()
+					.onMalformedInput(CodingErrorAction.REPORT)
+					.onUnmappableCharacter(CodingErrorAction.REPORT)
+					.decode(ByteBuffer.wrap(data));
+			properties.load(new InputStreamReader(new ByteArrayInputStream(data), StandardCharsets.UTF_8));
+		} catch(CharacterCodingException e) {
+			properties.load(new ByteArrayInputStream(data));
+		}
+		return properties;
+	}
+
+	/**
+	 * Writes the sources of all bundles.
+	 * @param out The source directory.
+	 * @return The number of generated classes.
+	 * @throws IOException
+	 */
+	public int write(File out) throws IOException {
+		int count = 0;
+		for(Map.Entry<String, Map<String, Properties>> pkg : bundles.entrySet()) {
+			Map<String, Properties> locales = pkg.getValue();
+			for(String locale : locales.keySet()) {
+				write(out, pkg.getKey(), locale, merge(locales, locale));
+				count++;
+			}
+		}
+		return count;
+	}
+
+	// the keys of the bundle and all of its parents
+	private static Map<String, String> merge(Map<String, Properties> locales, String locale) {
+		List<String> chain = new ArrayList<String>();
+		chain.add(locale);
+		for(int index = locale.lastIndexOf('_'); index != -1; index = locale.lastIndexOf('_', index-1)) {
+			chain.add(locale.substring(0, index));
+		}
+		if(locale.length() > 0) {
+			chain.add("");
+		}
+		Map<String, String> merged = new TreeMap<String, String>();
+		for(int i = chain.size()-1; i >= 0; i--) {
+			Properties properties = locales.get(chain.get(i));
+			if(properties != null) {
+				for(String key : properties.stringPropertyNames()) {
+					merged.put(key, properties.getProperty(key));
+				}
+			}
+		}
+		return merged;
+	}
+
+	private void write(File out, String packageName, String locale, Map<String, String> values) throws IOException {
+		String simpleName = BUNDLE+(locale.length() == 0 ? "" : "_"+locale)+CompiledBundle.SUFFIX;
+		String baseName = packageName.length() == 0 ? BUNDLE : packageName+"."+BUNDLE;
+		File dir = packageName.length() == 0 ? out : new File(out, packageName.replace('.', File.separatorChar));
+		dir.mkdirs();
+
+		StringBuilder src = new StringBuilder();
+		src.append("// Generated by ").append(BundleCompiler.class.getName()).append(", do not edit.\n");
+		if(packageName.length() > 0) {
+			src.append("package ").append(packageName).append(";\n\n");
+		}
+		src.append("public final class ").append(simpleName).append(" extends ").append(CompiledBundle.class.getName()).append(" {\n");
+		src.append("\tpublic ").append(simpleName).append("() {\n");
+		src.append("\t\tsuper(").append(quote(baseName)).append(", ").append(quote(locale)).append(", ").append(values.size()).append(");\n");
+		int methods = (values.size() + KEYS_PER_METHOD - 1) / KEYS_PER_METHOD;
+		for(int i = 0; i < methods; i++) {
+			src.append("\t\tadd").append(i).append("();\n");
+		}
+		src.append("\t}\n");
+
+		int count = 0;
+		for(Map.Entry<String, String> entry : values.entrySet()) {
+			if(count % KEYS_PER_METHOD == 0) {
+				if(count > 0) {
+					src.append("\t}\n");
+				}
+				src.append("\n\tprivate void add").append(count / KEYS_PER_METHOD).append("() {\n");
+			}
+			src.append("\t\t");
+			appendAdd(src, entry.getKey(), entry.getValue());
+			src.append("\n");
+			count++;
+		}
+		if(count > 0) {
+			src.append("\t}\n");
+		}
+		src.append("}\n");
+
+		Writer writer = new OutputStreamWriter(new FileOutputStream(new File(dir, simpleName+".java")), StandardCharsets.UTF_8);
+		try {
+			writer.write(src.toString());
+		} finally {
+			writer.close();
+		}
+	}
+
+	private static void appendAdd(StringBuilder src, String key, String value) {
+		AbstractSystemAction.MnemonicString string;
+		try {
+			// the keystroke will be adjusted for Mac OS X at runtime
+			string = AbstractSystemAction.parseMnemonicString(value, false);
+		} catch(RuntimeException e) {
+			// not a valid label, it'll be parsed (and fail) at runtime as before
+			src.append("add(").append(quote(key)).append(", ").append(quote(value)).append(");");
+			return;
+		}
+		src.append("add(").append(quote(key)).append(", ").append(quote(value))
+				.append(", ").append(quote(string.getName())).append(", ").append(quote(string.getMnemonic()));
+		KeyStroke keyStroke = string.getKeyStroke();
+		if(keyStroke != null) {
+			src.append(", ").append(keyStroke.getKeyCode())
+					.append(", ").append(quote(keyStroke.getKeyChar()))
+					.append(", ").append(CompiledBundle.extendedModifiers(keyStroke.getModifiers()))
+					.append(", ").append(keyStroke.isOnKeyRelease());
+		}
+		src.append(");");
+	}
+
+	private static String quote(String s) {
+		StringBuilder buf = new StringBuilder(s.length()+2);
+		buf.append('"');
+		for(int i = 0; i < s.length(); i++) {
+			escape(buf, s.charAt(i));
+		}
+		return buf.append('"').toString();
+	}
+
+	private static String quote(char c) {
+		StringBuilder buf = new StringBuilder(8);
+		buf.append('\'');
+		if(c == '\'') {
+			buf.append("\\'");
+		} else if(c == '"') {
+			buf.append('"');
+		} else {
+			escape(buf, c);
+		}
+		return buf.append('\'').toString();
+	}
+
+	private static void escape(StringBuilder buf, char c) {
+		switch(c) {
+			case '"': buf.append("\\\""); break;
+			case '\\': buf.append("\\\\"); break;
+			case '\n': buf.append("\\n"); break;
+			case '\r': buf.append("\\r"); break;
+			case '\t': buf.append("\\t"); break;
+			default:
+				if(c < 0x20 || c > 0x7e) {
+					buf.append(String.format("\\u%04x", (int)c));
+				} else {
+					buf.append(c);
+				}
+		}
+	}
+
+	/**
+	 * Checks the labels of the ActionMethods only.
+	 * @see #check(File, boolean)
+	 */
+	public int check(File classes) throws IOException {
+		return check(classes, false);
+	}
+
+	/**
+	 * <p>Reports every label that is requested by an action in the class
+	 * directory but isn't part of the base bundle of its package.</p>
+	 * @param classes A directory containing compiled classes.
+	 * @param instantiate Whether the AbstractSystemActions should be created
+	 * 		to learn their labels. This runs their constructors.
+	 * @return The number of missing labels.
+	 * @throws IOException
+	 */
+	public int check(File classes, boolean instantiate) throws IOException {
+		List<String> classNames = new ArrayList<String>();
+		collectClasses(classes, "", classNames);
+
+		// package -> key -> the first class using it
+		Map<String, Map<String, String>> requested = new TreeMap<String, Map<String, String>>();
+		RecordingProvider recorder = new RecordingProvider(requested);
+		ActionResourceProvider oldProvider = AbstractSystemAction.getProvider();
+		AbstractSystemAction.setProvider(recorder);
+		ClassLoader loader = new URLClassLoader(new URL[] {classes.toURI().toURL()}, BundleCompiler.class.getClassLoader());
+		try {
+			for(String className : classNames) {
+				Class<?> clazz;
+				try {
+					clazz = Class.forName(className, false, loader);
+				} catch(Throwable t) {
+					System.err.println("Skipping "+className+": "+t);
+					continue;
+				}
+				checkActionMethods(clazz, recorder);
+				if(instantiate && AbstractSystemAction.class.isAssignableFrom(clazz)
+						&& !Modifier.isAbstract(clazz.getModifiers())) {
+					try {
+						clazz.getConstructor().newInstance();
+					} catch(NoSuchMethodException e) {
+						System.err.println("Can't check "+className+", it has no public no-arg constructor.");
+					} catch(Throwable t) {
+						System.err.println("Can't check "+className+": "+t);
+					}
+				}
+			}
+		} finally {
+			AbstractSystemAction.setProvider(oldProvider);
+		}
+
+		int missing = 0;
+		for(Map.Entry<String, Map<String, String>> pkg : requested.entrySet()) {
+			Map<String, Properties> locales = bundles.get(pkg.getKey());
+			Properties base = locales == null ? null : locales.get("");
+			String bundleName = pkg.getKey().length() == 0 ? BUNDLE : pkg.getKey()+"."+BUNDLE;
+			for(Map.Entry<String, String> key : pkg.getValue().entrySet()) {
+				if(base == null || base.getProperty(key.getKey()) == null) {
+					System.err.println("Missing key '"+key.getKey()+"' in bundle '"+bundleName+"' (used by "+key.getValue()+")");
+					missing++;
+				}
+			}
+		}
+		return missing;
+	}
+
+	private static void collectClasses(File dir, String packageName, List<String> classNames) throws IOException {
+		File[] files = dir.listFiles();
+		if(files == null) {
+			throw new IOException("Can't read directory "+dir);
+		}
+		for(File file : files) {
+			String name = file.getName();
+			if(file.isDirectory()) {
+				collectClasses(file, packageName+name+".", classNames);
+			} else if(name.endsWith(".class") && name.indexOf("$$") == -1) {
+				classNames.add(packageName+name.substring(0, name.length()-".class".length()));
+			}
+		}
+	}
+
+	private static void checkActionMethods(Class<?> clazz, RecordingProvider recorder) {
+		Method[] methods;
+		try {
+			methods = clazz.getDeclaredMethods();
+		} catch(Throwable t) {
+			System.err.println("Can't check "+clazz.getName()+": "+t);
+			return;
+		}
+		for(Method method : methods) {
+			ActionMethod annotation = method.getAnnotation(ActionMethod.class);
+			// labels given by the annotation don't need a key
+			if(annotation != null && annotation.label().length() == 0) {
+				String id = annotation.id().length() == 0 ? method.getName() : annotation.id();
+				recorder.record(clazz, id+".name");
+			}
+		}
+	}
+
+	/**
+	 * Records the keys requested by the actions.
+	 */
+	private static class RecordingProvider implements ActionResourceProvider {
+		private Map<String, Map<String, String>> requested;
+
+		public RecordingProvider(Map<String, Map<String, String>> requested) {
+			this.requested = requested;
+		}
+
+		public String getString(Object action, String key) {
+			record(action.getClass(), key);
+			return "";
+		}
+
+		public Object getConfig(Object action, String id) {
+			return null;
+		}
+
+		public void record(Class<?> clazz, String key) {
+			String className = clazz.getName();
+			int index = className.lastIndexOf('.');
+			String packageName = index == -1 ? "" : className.substring(0, index);
+			Map<String, String> keys = requested.get(packageName);
+			if(keys == null) {
+				keys = new TreeMap<String, String>();
+				requested.put(packageName, keys);
+			}
+			if(!keys.containsKey(key)) {
+				keys.put(key, className);
+			}
+		}
+	}
+}
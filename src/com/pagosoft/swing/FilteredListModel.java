@@ -0,0 +1,366 @@
+/*
+ * Copyright 2005 Patrick Gotthardt
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.pagosoft.swing;
+
+import javax.swing.*;
+import javax.swing.event.ListDataEvent;
+import javax.swing.event.ListDataListener;
+import java.util.Arrays;
+import java.util.function.Predicate;
+
+/**
+ * <p>A live view of the elements of another ListModel (e.g. an
+ * {@link com.pagosoft.action.ActionContainer}) that are accepted by a filter.</p>
+ * <p>The view keeps the source index of each of its elements. Changes of the
+ * source are turned into changes of the view directly, the filter is only
+ * asked about the elements that have been added or changed. Changing the
+ * filter sends the smallest set of events that turns the old view into the
+ * new one.</p>
+ * <pre><code>FilteredListModel matches = new FilteredListModel(container, search);
+ * ListModelBinder.install(menu, matches, ActionMenuProvider.getInstance());
+ * ...
+ * matches.setFilter(otherSearch);</code></pre>
+ * <p>If the filter depends on the state of the elements (like "only enabled
+ * actions"), call {@link #refilter(Object)} when that state changes, e.g. from
+ * a PropertyChangeListener of the actions.</p>
+ *
+ * <p>Like all Swing models this class should only be used on the EDT.</p>
+ *
+ * @author Patrick Gotthardt
+ */
+public class FilteredListModel extends AbstractListModel<Object> implements ListDataListener {
+	private static final long serialVersionUID = 1L;
+
+	private static final int CHANGED = 0;
+	private static final int ADDED = 1;
+	private static final int REMOVED = 2;
+
+	private ListModel<?> source;
+	private Predicate<Object> filter;
+	// the source index of every element of the view, ascending
+	private int[] map = new int[16];
+	private int size;
+	private int sourceSize;
+	// while the view is updated, the elements from gapStart on are stored gapLength later
+	private int gapStart;
+	private int gapLength;
+
+	// the run of events that hasn't been sent yet
+	private int runType = -1;
+	private int runStart;
+	private int runEnd;
+
+	/**
+	 * @param source
+	 * @param filter The elements of the source that are part of the view.
+	 */
+	public FilteredListModel(ListModel<?> source, Predicate<Object> filter) {
+		this.source = source;
+		this.filter = filter;
+		source.addListDataListener(this);
+		rebuild();
+	}
+
+	/**
+	 * Stops listening to the source.
+	 */
+	public void dispose() {
+		source.removeListDataListener(this);
+	}
+
+	public ListModel<?> getSource() {
+		return source;
+	}
+
+	public Predicate<Object> getFilter() {
+		return filter;
+	}
+
+	/**
+	 * Replaces the filter, the view will only be changed where the filters
+	 * differ.
+	 * @param filter
+	 */
+	public void setFilter(Predicate<Object> filter) {
+		this.filter = filter;
+		refilter();
+	}
+
+	/**
+	 * Asks the filter about all elements again.
+	 */
+	public void refilter() {
+		if(sourceSize > 0) {
+			update(0, sourceSize-1, false);
+		}
+	}
+
+	/**
+	 * Asks the filter about the element at the source index again.
+	 * @param sourceIndex
+	 */
+	public void refilter(int sourceIndex) {
+		if(sourceIndex < 0 || sourceIndex >= sourceSize) {
+			throw new IndexOutOfBoundsException("index "+sourceIndex+", size "+sourceSize);
+		}
+		update(sourceIndex, sourceIndex, false);
+	}
+
+	/**
+	 * Asks the filter about every occurrence of the element again.
+	 * @param element
+	 */
+	public void refilter(Object element) {
+		for(int i = 0; i < sourceSize; i++) {
+			if(source.getElementAt(i) == element) {
+				update(i, i, false);
+			}
+		}
+	}
+
+	public int getSize() {
+		return size;
+	}
+
+	public Object getElementAt(int index) {
+		if(index >= size) {
+			throw new IndexOutOfBoundsException("index "+index+", size "+size);
+		}
+		return source.getElementAt(map[physical(index)]);
+	}
+
+	/**
+	 * @param index An index of the view.
+	 * @return The index of the element in the source.
+	 */
+	public int getSourceIndex(int index) {
+		if(index >= size) {
+			throw new IndexOutOfBoundsException("index "+index+", size "+size);
+		}
+		return map[physical(index)];
+	}
+
+	/**
+	 * @param sourceIndex An index of the source.
+	 * @return The index of the element in the view or -1 if it isn't accepted.
+	 */
+	public int getViewIndex(int sourceIndex) {
+		int index = lowerBound(sourceIndex);
+		return index < size && map[physical(index)] == sourceIndex ? index : -1;
+	}
+
+	public void intervalAdded(ListDataEvent e) {
+		int index0 = Math.min(e.getIndex0(), e.getIndex1());
+		int index1 = Math.max(e.getIndex0(), e.getIndex1());
+		int count = index1 - index0 + 1;
+		if(index0 < 0 || index0 > sourceSize) {
+			reset();
+			return;
+		}
+		int pos = lowerBound(index0);
+		boolean[] accepted = new boolean[count];
+		int added = 0;
+		for(int i = 0; i < count; i++) {
+			accepted[i] = filter.test(source.getElementAt(index0+i));
+			if(accepted[i]) {
+				added++;
+			}
+		}
+		sourceSize += count;
+		ensureCapacity(size + added);
+		System.arraycopy(map, pos, map, pos+added, size-pos);
+		for(int i = pos+added; i < size+added; i++) {
+			map[i] += count;
+		}
+		int j = pos;
+		for(int i = 0; i < count; i++) {
+			if(accepted[i]) {
+				map[j++] = index0+i;
+			}
+		}
+		size += added;
+		if(added > 0) {
+			fireIntervalAdded(this, pos, pos+added-1);
+		}
+	}
+
+	public void intervalRemoved(ListDataEvent e) {
+		int index0 = Math.min(e.getIndex0(), e.getIndex1());
+		int index1 = Math.max(e.getIndex0(), e.getIndex1());
+		int count = index1 - index0 + 1;
+		if(index0 < 0 || index1 >= sourceSize) {
+			reset();
+			return;
+		}
+		int from = lowerBound(index0);
+		int to = lowerBound(index1+1);
+		int removed = to - from;
+		System.arraycopy(map, to, map, from, size-to);
+		size -= removed;
+		for(int i = from; i < size; i++) {
+			map[i] -= count;
+		}
+		sourceSize -= count;
+		if(removed > 0) {
+			fireIntervalRemoved(this, from, to-1);
+		}
+	}
+
+	public void contentsChanged(ListDataEvent e) {
+		int index0 = Math.min(e.getIndex0(), e.getIndex1());
+		int index1 = Math.max(e.getIndex0(), e.getIndex1());
+		if(index0 < 0) {
+			reset();
+			return;
+		}
+		index1 = Math.min(index1, sourceSize-1);
+		if(index0 <= index1) {
+			update(index0, index1, true);
+		}
+	}
+
+	/**
+	 * Asks the filter about the source elements in the range and sends the
+	 * changes. The events are sent from the start to the end and the view is
+	 * changed one run at a time, so each event matches the state of the view
+	 * when it is sent.
+	 */
+	private void update(int index0, int index1, boolean changed) {
+		int count = index1 - index0 + 1;
+		boolean[] accepted = new boolean[count];
+		for(int i = 0; i < count; i++) {
+			accepted[i] = filter.test(source.getElementAt(index0+i));
+		}
+
+		// the elements that haven't been looked at are moved to the end, the
+		// view grows into the gap and shrinks from its end
+		int from = lowerBound(index0);
+		int capacity = size + count;
+		ensureCapacity(capacity);
+		gapStart = from;
+		gapLength = capacity - size;
+		System.arraycopy(map, from, map, from+gapLength, size-from);
+
+		for(int i = 0; i < count; i++) {
+			int next = gapStart + gapLength;
+			boolean was = next < capacity && map[next] == index0+i;
+			// the run is sent before the element is changed, so the pending
+			// events are sent before the view changes any further
+			if(was && accepted[i]) {
+				if(changed) {
+					run(CHANGED, gapStart);
+				}
+				map[gapStart++] = map[next];
+			} else if(was) {
+				run(REMOVED, gapStart);
+				gapLength++;
+				size--;
+			} else if(accepted[i]) {
+				run(ADDED, gapStart);
+				map[gapStart++] = index0+i;
+				gapLength--;
+				size++;
+			}
+		}
+		flushRun();
+
+		System.arraycopy(map, gapStart+gapLength, map, gapStart, size-gapStart);
+		gapLength = 0;
+	}
+
+	// extends the current run of events or starts a new one
+	private void run(int type, int index) {
+		if(runType == type) {
+			if(type == REMOVED && index == runStart) {
+				runEnd++;
+				return;
+			}
+			if(type != REMOVED && index == runEnd+1) {
+				runEnd = index;
+				return;
+			}
+		}
+		flushRun();
+		runType = type;
+		runStart = index;
+		runEnd = index;
+	}
+
+	private void flushRun() {
+		int type = runType;
+		runType = -1;
+		switch(type) {
+			case CHANGED:
+				fireContentsChanged(this, runStart, runEnd);
+				break;
+			case ADDED:
+				fireIntervalAdded(this, runStart, runEnd);
+				break;
+			case REMOVED:
+				fireIntervalRemoved(this, runStart, runEnd);
+				break;
+		}
+	}
+
+	// the source doesn't send proper events, start over
+	private void reset() {
+		int oldSize = size;
+		rebuild();
+		if(oldSize > 0) {
+			fireIntervalRemoved(this, 0, oldSize-1);
+		}
+		if(size > 0) {
+			fireIntervalAdded(this, 0, size-1);
+		}
+	}
+
+	private void rebuild() {
+		sourceSize = source.getSize();
+		size = 0;
+		for(int i = 0; i < sourceSize; i++) {
+			if(filter.test(source.getElementAt(i))) {
+				ensureCapacity(size+1);
+				map[size++] = i;
+			}
+		}
+	}
+
+	// the position of the view index in map
+	private int physical(int index) {
+		return index < gapStart ? index : index + gapLength;
+	}
+
+	// the first view index whose source index is not below the source index
+	private int lowerBound(int sourceIndex) {
+		int low = 0;
+		int high = size;
+		while(low < high) {
+			int mid = (low + high) >>> 1;
+			if(map[physical(mid)] < sourceIndex) {
+				low = mid+1;
+			} else {
+				high = mid;
+			}
+		}
+		return low;
+	}
+
+	private void ensureCapacity(int capacity) {
+		if(capacity > map.length) {
+			map = Arrays.copyOf(map, Math.max(capacity, map.length * 2));
+		}
+	}
+}
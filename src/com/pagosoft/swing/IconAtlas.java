@@ -0,0 +1,212 @@
+/*
+ * Copyright 2005 Patrick Gotthardt
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.pagosoft.swing;
+
+import javax.imageio.ImageIO;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.BufferedInputStream;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.net.URL;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * <p>Many small icons packed into a single image, created by
+ * {@link IconAtlasBuilder}.</p>
+ * <p>The index is read when the atlas is created, the image is decoded
+ * in one go when the first of its icons is needed. The icons are sub-images
+ * of the atlas, so they don't need any memory of their own.</p>
+ * <p>Register the atlas with the {@link IconCache}, it will then serve the
+ * icons that are part of the atlas without looking up the single resources:</p>
+ * <pre><code>IconCache.getDefaultInstance().addAtlas(
+ *     IconAtlas.load(MyApp.class.getClassLoader(), "icons/atlas"));</code></pre>
+ *
+ * <p>This class is thread-safe.</p>
+ *
+ * @author Patrick Gotthardt
+ */
+public class IconAtlas {
+	/**
+	 * Extension of the atlas image.
+	 */
+	public static final String IMAGE_SUFFIX = ".png";
+	/**
+	 * Extension of the index.
+	 */
+	public static final String INDEX_SUFFIX = ".idx";
+
+	private static Logger logger = Logger.getLogger("com.pagosoft.swing.IconAtlas");
+
+	private URL image;
+	// x, y, width, height by resource name
+	private Map<String, int[]> regions;
+	private BufferedImage atlas;
+	private boolean failed;
+
+	/**
+	 * @param image The location of the atlas image.
+	 * @param index The location of the index.
+	 * @throws IOException If the index couldn't be read.
+	 */
+	public IconAtlas(URL image, URL index) throws IOException {
+		this.image = image;
+		this.regions = readIndex(index);
+	}
+
+	/**
+	 * Loads the atlas <code>baseName.png</code> and its index <code>baseName.idx</code>.
+	 * @param loader
+	 * @param baseName An absolute resource name (without leading slash and extension).
+	 * @return The atlas or <code>null</code> if there is no such atlas.
+	 * @throws IOException If the index couldn't be read.
+	 */
+	public static IconAtlas load(ClassLoader loader, String baseName) throws IOException {
+		if(loader == null) {
+			loader = ClassLoader.getSystemClassLoader();
+		}
+		URL image = loader.getResource(baseName+IMAGE_SUFFIX);
+		URL index = loader.getResource(baseName+INDEX_SUFFIX);
+		if(image == null || index == null) {
+			logger.warning("No icon atlas '"+baseName+"' found.");
+			return null;
+		}
+		return new IconAtlas(image, index);
+	}
+
+	private static Map<String, int[]> readIndex(URL index) throws IOException {
+		Map<String, int[]> regions = new HashMap<String, int[]>();
+		BufferedReader in = new BufferedReader(new InputStreamReader(index.openStream(), "UTF-8"));
+		try {
+			String line;
+			while((line = in.readLine()) != null) {
+				line = line.trim();
+				if(line.length() == 0 || line.charAt(0) == '#') {
+					continue;
+				}
+				int eq = line.lastIndexOf('=');
+				String[] values = line.substring(eq+1).split(",");
+				if(eq <= 0 || values.length != 4) {
+					throw new IOException("Invalid line in "+index+": "+line);
+				}
+				int[] region = new int[4];
+				try {
+					for(int i = 0; i < 4; i++) {
+						region[i] = Integer.parseInt(values[i].trim());
+					}
+				} catch(NumberFormatException e) {
+					throw new IOException("Invalid line in "+index+": "+line);
+				}
+				regions.put(line.substring(0, eq).trim(), region);
+			}
+		} finally {
+			in.close();
+		}
+		return regions;
+	}
+
+	/**
+	 * @param name An absolute resource name (without leading slash).
+	 * @return <code>true</code> if the icon is part of this atlas.
+	 */
+	public boolean contains(String name) {
+		return regions.containsKey(name);
+	}
+
+	/**
+	 * @return The number of icons in this atlas.
+	 */
+	public int size() {
+		return regions.size();
+	}
+
+	/**
+	 * @param name An absolute resource name (without leading slash).
+	 * @return The width of the icon or -1 if it isn't part of this atlas.
+	 */
+	public int getWidth(String name) {
+		int[] region = regions.get(name);
+		return region == null ? -1 : region[2];
+	}
+
+	/**
+	 * @param name An absolute resource name (without leading slash).
+	 * @return The height of the icon or -1 if it isn't part of this atlas.
+	 */
+	public int getHeight(String name) {
+		int[] region = regions.get(name);
+		return region == null ? -1 : region[3];
+	}
+
+	/**
+	 * Returns the image of the icon, the atlas will be decoded by
+	 * the first call.
+	 * @param name An absolute resource name (without leading slash).
+	 * @return The image or <code>null</code> if it isn't part of this atlas
+	 * 		or the atlas couldn't be decoded.
+	 */
+	public Image getImage(String name) {
+		int[] region = regions.get(name);
+		if(region == null) {
+			return null;
+		}
+		BufferedImage img = getAtlas();
+		if(img == null) {
+			return null;
+		}
+		return img.getSubimage(region[0], region[1], region[2], region[3]);
+	}
+
+	private synchronized BufferedImage getAtlas() {
+		if(atlas == null && !failed) {
+			try {
+				InputStream in = new BufferedInputStream(image.openStream(), 64 * 1024);
+				try {
+					atlas = ImageIO.read(in);
+				} finally {
+					in.close();
+				}
+			} catch(IOException e) {
+				logger.log(Level.WARNING, "Couldn't read icon atlas "+image, e);
+			}
+			failed = atlas == null;
+		}
+		return atlas;
+	}
+
+	/**
+	 * @return <code>true</code> if the atlas image has been decoded.
+	 */
+	public synchronized boolean isLoaded() {
+		return atlas != null;
+	}
+
+	/**
+	 * @return The location of the atlas image.
+	 */
+	public URL getURL() {
+		return image;
+	}
+
+	public String toString() {
+		return image.toExternalForm();
+	}
+}
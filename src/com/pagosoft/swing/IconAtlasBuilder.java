@@ -0,0 +1,173 @@
+/*
+ * Copyright 2005 Patrick Gotthardt
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.pagosoft.swing;
+
+import javax.imageio.ImageIO;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * <p>Packs all PNG images below a resource directory into an
+ * {@link IconAtlas}. Run it as a build step after the resources
+ * have been copied:</p>
+ * <pre><code>java com.pagosoft.swing.IconAtlasBuilder build/classes build/classes/icons/atlas</code></pre>
+ * <p>This writes <code>icons/atlas.png</code> and <code>icons/atlas.idx</code>.
+ * The icons are stored by their resource name (relative to the first
+ * argument), which is the same name {@link IconCache} uses to look them up.
+ * The single images aren't removed, so they are still found if the atlas
+ * isn't registered.</p>
+ *
+ * @author Patrick Gotthardt
+ */
+public class IconAtlasBuilder {
+	private List<Entry> entries = new ArrayList<Entry>();
+
+	public static void main(String[] args) throws IOException {
+		if(args.length != 2) {
+			System.err.println("Usage: IconAtlasBuilder <resource directory> <atlas base name>");
+			System.exit(1);
+		}
+		IconAtlasBuilder builder = new IconAtlasBuilder();
+		File root = new File(args[0]);
+		File atlas = new File(args[1]+IconAtlas.IMAGE_SUFFIX);
+		builder.addDirectory(root, "", atlas.getCanonicalFile());
+		builder.write(atlas, new File(args[1]+IconAtlas.INDEX_SUFFIX));
+		System.out.println("Packed "+builder.entries.size()+" icons into "+atlas);
+	}
+
+	/**
+	 * Adds all PNG images of the directory and its subdirectories.
+	 * @param dir
+	 * @param prefix The resource name of the directory (empty or ending with a slash).
+	 * @param exclude A file that should not be added (the atlas itself).
+	 * @throws IOException
+	 */
+	public void addDirectory(File dir, String prefix, File exclude) throws IOException {
+		File[] files = dir.listFiles();
+		if(files == null) {
+			throw new IOException("Can't read directory "+dir);
+		}
+		for(File file : files) {
+			if(file.isDirectory()) {
+				addDirectory(file, prefix+file.getName()+"/", exclude);
+			} else if(file.getName().toLowerCase().endsWith(".png")
+					&& !file.getCanonicalFile().equals(exclude)) {
+				add(prefix+file.getName(), file);
+			}
+		}
+	}
+
+	/**
+	 * @param name The resource name of the image.
+	 * @param file
+	 * @throws IOException
+	 */
+	public void add(String name, File file) throws IOException {
+		BufferedImage image = ImageIO.read(file);
+		if(image == null) {
+			throw new IOException("Can't decode "+file);
+		}
+		entries.add(new Entry(name, image));
+	}
+
+	/**
+	 * Packs the images into shelves (rows) sorted by height and
+	 * writes the atlas and its index.
+	 * @param atlasFile
+	 * @param indexFile
+	 * @throws IOException
+	 */
+	public void write(File atlasFile, File indexFile) throws IOException {
+		List<Entry> sorted = new ArrayList<Entry>(entries);
+		Collections.sort(sorted, new Comparator<Entry>() {
+			public int compare(Entry a, Entry b) {
+				int h = b.image.getHeight() - a.image.getHeight();
+				return h != 0 ? h : a.name.compareTo(b.name);
+			}
+		});
+
+		// aim for a roughly square atlas
+		long area = 0;
+		int maxWidth = 1;
+		for(Entry e : sorted) {
+			area += (long)e.image.getWidth() * e.image.getHeight();
+			maxWidth = Math.max(maxWidth, e.image.getWidth());
+		}
+		int width = Math.max(maxWidth, (int)Math.ceil(Math.sqrt(area)));
+
+		int x = 0, y = 0, shelfHeight = 0;
+		for(Entry e : sorted) {
+			if(x + e.image.getWidth() > width) {
+				x = 0;
+				y += shelfHeight;
+				shelfHeight = 0;
+			}
+			e.x = x;
+			e.y = y;
+			x += e.image.getWidth();
+			shelfHeight = Math.max(shelfHeight, e.image.getHeight());
+		}
+		int height = Math.max(1, y + shelfHeight);
+
+		BufferedImage atlas = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+		Graphics2D g = atlas.createGraphics();
+		try {
+			for(Entry e : sorted) {
+				g.drawImage(e.image, e.x, e.y, null);
+			}
+		} finally {
+			g.dispose();
+		}
+		File parent = atlasFile.getAbsoluteFile().getParentFile();
+		if(parent != null) {
+			parent.mkdirs();
+		}
+		if(!ImageIO.write(atlas, "png", atlasFile)) {
+			throw new IOException("No PNG writer available");
+		}
+
+		Writer out = new OutputStreamWriter(new FileOutputStream(indexFile), "UTF-8");
+		try {
+			out.write("# name=x,y,width,height\n");
+			for(Entry e : sorted) {
+				out.write(e.name+"="+e.x+","+e.y+","+e.image.getWidth()+","+e.image.getHeight()+"\n");
+			}
+		} finally {
+			out.close();
+		}
+	}
+
+	private static class Entry {
+		private String name;
+		private BufferedImage image;
+		private int x;
+		private int y;
+
+		public Entry(String name, BufferedImage image) {
+			this.name = name;
+			this.image = image;
+		}
+	}
+}
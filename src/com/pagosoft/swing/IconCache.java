@@ -0,0 +1,309 @@
+/*
+ * Copyright 2005 Patrick Gotthardt
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.pagosoft.swing;
+
+import javax.swing.*;
+import java.awt.Image;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.SoftReference;
+import java.net.URL;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Logger;
+
+/**
+ * <p>A process-wide cache of the icons loaded from the classpath.</p>
+ * <p>Every icon is loaded only once and shared by everyone who requests it.
+ * The icons are {@link LazyIcon}s, so they are decoded on a background thread
+ * when they are painted for the first time. Use {@link #preload} to decode
+ * them before that, for example while the splash screen is shown.</p>
+ * <p>Icons that are no longer in use are only softly referenced and will
+ * be dropped if memory gets low.</p>
+ * <p>Icons that are part of a registered {@link IconAtlas} are served
+ * from the atlas without looking up their single resources.</p>
+ * <pre><code>Icon icon = IconCache.getDefaultInstance().getIcon(getClass(), "icons/open.png");</code></pre>
+ *
+ * <p>This class is thread-safe.</p>
+ *
+ * @author Patrick Gotthardt
+ */
+public class IconCache {
+	private static volatile IconCache defaultInstance;
+	public static IconCache getDefaultInstance() {
+		if(defaultInstance == null) {
+			synchronized(IconCache.class) {
+				if(defaultInstance == null) {
+					defaultInstance = new IconCache();
+				}
+			}
+		}
+		return defaultInstance;
+	}
+
+	public static void setDefaultInstance(IconCache instance) {
+		defaultInstance = instance;
+	}
+
+	private static Logger logger = Logger.getLogger("com.pagosoft.swing.IconCache");
+
+	// icons by class loader and resource name
+	private Map<ClassLoader, ConcurrentMap<String, IconReference>> loaders = new WeakHashMap<ClassLoader, ConcurrentMap<String, IconReference>>();
+	private ReferenceQueue<LazyIcon> queue = new ReferenceQueue<LazyIcon>();
+	private List<IconAtlas> atlases = new CopyOnWriteArrayList<IconAtlas>();
+	private Executor executor;
+	private AtomicLong hitCount = new AtomicLong();
+	private AtomicLong missCount = new AtomicLong();
+	private AtomicLong loadedBytes = new AtomicLong();
+	private AtomicInteger size = new AtomicInteger();
+
+	public IconCache() {
+		this(createExecutor());
+	}
+
+	/**
+	 * @param executor The executor that decodes the icons.
+	 */
+	public IconCache(Executor executor) {
+		this.executor = executor;
+	}
+
+	private static ExecutorService createExecutor() {
+		final AtomicInteger count = new AtomicInteger();
+		int threads = Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors()));
+		return Executors.newFixedThreadPool(threads, new ThreadFactory() {
+			public Thread newThread(Runnable r) {
+				Thread t = new Thread(r, "IconCache-"+count.incrementAndGet());
+				t.setDaemon(true);
+				t.setPriority(Thread.MIN_PRIORITY);
+				return t;
+			}
+		});
+	}
+
+	/**
+	 * Returns the icon, relative paths are resolved like
+	 * {@link Class#getResource} does.
+	 * @param clazz
+	 * @param path
+	 * @return The icon or <code>null</code> if there is no such resource.
+	 */
+	public Icon getIcon(Class<?> clazz, String path) {
+		return getIcon(clazz.getClassLoader(), resolveName(clazz, path));
+	}
+
+	/**
+	 * @param loader The class loader used to find the resource.
+	 * @param name An absolute resource name (without leading slash).
+	 * @return The icon or <code>null</code> if there is no such resource.
+	 */
+	public Icon getIcon(ClassLoader loader, String name) {
+		expungeStaleIcons();
+		ConcurrentMap<String, IconReference> icons = getIcons(loader);
+		IconReference ref = icons.get(name);
+		LazyIcon icon = ref == null ? null : ref.get();
+		if(icon != null) {
+			hitCount.incrementAndGet();
+			return icon;
+		}
+		missCount.incrementAndGet();
+		LazyIcon created = null;
+		for(IconAtlas atlas : atlases) {
+			if(atlas.contains(name)) {
+				created = new AtlasIcon(atlas, name, executor);
+				break;
+			}
+		}
+		if(created == null) {
+			URL url = loader == null ? ClassLoader.getSystemResource(name) : loader.getResource(name);
+			if(url == null) {
+				logger.warning("No icon '"+name+"' found.");
+				return null;
+			}
+			created = new CachedIcon(url, executor);
+		}
+		IconReference createdRef = new IconReference(created, name, icons, queue);
+		if(created instanceof CachedIcon) {
+			((CachedIcon)created).reference = createdRef;
+		}
+		while(true) {
+			IconReference existing = icons.putIfAbsent(name, createdRef);
+			if(existing == null) {
+				break;
+			}
+			// another thread might have been faster
+			icon = existing.get();
+			if(icon != null) {
+				return icon;
+			}
+			if(icons.replace(name, existing, createdRef)) {
+				discard(existing);
+				break;
+			}
+		}
+		size.incrementAndGet();
+		return created;
+	}
+
+	/**
+	 * Decodes the icon in the background.
+	 * @param clazz
+	 * @param path
+	 */
+	public void preload(Class<?> clazz, String path) {
+		Icon icon = getIcon(clazz, path);
+		if(icon instanceof LazyIcon) {
+			((LazyIcon)icon).preload();
+		}
+	}
+
+	/**
+	 * <p>Registers an atlas, its icons will be served from the atlas
+	 * (regardless of the class loader they are requested for).</p>
+	 * <p>Icons that have already been loaded from their single resources
+	 * remain in the cache, so register the atlas as early as possible.</p>
+	 * @param atlas
+	 */
+	public void addAtlas(IconAtlas atlas) {
+		atlases.add(atlas);
+	}
+
+	public void removeAtlas(IconAtlas atlas) {
+		atlases.remove(atlas);
+	}
+
+	private ConcurrentMap<String, IconReference> getIcons(ClassLoader loader) {
+		synchronized(loaders) {
+			ConcurrentMap<String, IconReference> icons = loaders.get(loader);
+			if(icons == null) {
+				icons = new ConcurrentHashMap<String, IconReference>();
+				loaders.put(loader, icons);
+			}
+			return icons;
+		}
+	}
+
+	private static String resolveName(Class<?> clazz, String path) {
+		if(path.startsWith("/")) {
+			return path.substring(1);
+		}
+		String className = clazz.getName();
+		int index = className.lastIndexOf('.');
+		if(index == -1) {
+			return path;
+		}
+		return className.substring(0, index).replace('.', '/')+"/"+path;
+	}
+
+	private void expungeStaleIcons() {
+		IconReference ref;
+		while((ref = (IconReference)queue.poll()) != null) {
+			if(ref.icons.remove(ref.name, ref)) {
+				discard(ref);
+			}
+		}
+	}
+
+	private void discard(IconReference ref) {
+		size.decrementAndGet();
+		loadedBytes.addAndGet(-ref.bytes);
+	}
+
+	/**
+	 * @return The number of icons that were found in the cache.
+	 */
+	public long getHitCount() {
+		return hitCount.get();
+	}
+
+	/**
+	 * @return The number of icons that had to be loaded.
+	 */
+	public long getMissCount() {
+		return missCount.get();
+	}
+
+	/**
+	 * @return The number of icons in the cache.
+	 */
+	public int getSize() {
+		expungeStaleIcons();
+		return size.get();
+	}
+
+	/**
+	 * @return The estimated memory used by the decoded icons (4 bytes per pixel),
+	 * 		icons of an atlas share its memory and aren't counted.
+	 */
+	public long getLoadedBytes() {
+		expungeStaleIcons();
+		return loadedBytes.get();
+	}
+
+	private class CachedIcon extends LazyIcon {
+		private static final long serialVersionUID = 1L;
+
+		private IconReference reference;
+
+		public CachedIcon(URL url, Executor executor) {
+			super(url, executor);
+		}
+
+		protected void loaded(int width, int height) {
+			long bytes = 4L * width * height;
+			reference.bytes = bytes;
+			loadedBytes.addAndGet(bytes);
+		}
+	}
+
+	private static class AtlasIcon extends LazyIcon {
+		private static final long serialVersionUID = 1L;
+
+		private IconAtlas atlas;
+		private String name;
+
+		public AtlasIcon(IconAtlas atlas, String name, Executor executor) {
+			super(atlas.getURL().toExternalForm()+"#"+name, atlas.getWidth(name), atlas.getHeight(name), executor);
+			this.atlas = atlas;
+			this.name = name;
+		}
+
+		protected Image decode() {
+			return atlas.getImage(name);
+		}
+	}
+
+	private static class IconReference extends SoftReference<LazyIcon> {
+		private String name;
+		private ConcurrentMap<String, IconReference> icons;
+		private volatile long bytes;
+
+		public IconReference(LazyIcon icon, String name, ConcurrentMap<String, IconReference> icons, ReferenceQueue<LazyIcon> queue) {
+			super(icon, queue);
+			this.name = name;
+			this.icons = icons;
+		}
+	}
+}
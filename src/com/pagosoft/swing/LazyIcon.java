@@ -0,0 +1,309 @@
+/*
+ * Copyright 2005 Patrick Gotthardt
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.pagosoft.swing;
+
+import javax.swing.*;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.beans.PropertyChangeEvent;
+import java.beans.PropertyChangeListener;
+import java.lang.ref.WeakReference;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * <p>An icon that decodes its image on a background thread when it is
+ * painted for the first time (or when {@link #preload} is called).</p>
+ * <p>Until the image is ready, an empty placeholder of
+ * {@link #PLACEHOLDER_SIZE} pixels is painted. The components that tried to
+ * paint the icon will be repainted (and revalidated if the size differs)
+ * once it has been decoded.</p>
+ * <p>It extends ImageIcon, so the look and feel is able to create disabled
+ * icons from it. {@link #getImage} doesn't wait for the image, it returns an
+ * empty placeholder until the image has been decoded. A disabled icon that
+ * the look and feel creates before that stays empty, so buttons should use
+ * {@link #getDisabledIcon} instead (see {@link #installDisabledIcon}).</p>
+ *
+ * @see IconCache
+ * @author Patrick Gotthardt
+ */
+public class LazyIcon extends ImageIcon {
+	private static final long serialVersionUID = 1L;
+
+	public static final int PLACEHOLDER_SIZE = 16;
+
+	private static Logger logger = Logger.getLogger("com.pagosoft.swing.LazyIcon");
+
+	// keeps the disabled icon of a button in sync with its icon
+	private static final PropertyChangeListener DISABLED_ICON_UPDATER = new PropertyChangeListener() {
+		public void propertyChange(PropertyChangeEvent e) {
+			updateDisabledIcon((AbstractButton)e.getSource());
+		}
+	};
+
+	private URL url;
+	private transient Executor executor;
+	private transient CompletableFuture<Void> loading;
+	private volatile Image image;
+	private volatile int width = PLACEHOLDER_SIZE;
+	private volatile int height = PLACEHOLDER_SIZE;
+	private transient List<WeakReference<Component>> waiting;
+	private transient Icon disabledIcon;
+
+	/**
+	 * @param url The location of the image.
+	 * @param executor The executor that will decode the image.
+	 */
+	public LazyIcon(URL url, Executor executor) {
+		this(url.toExternalForm(), PLACEHOLDER_SIZE, PLACEHOLDER_SIZE, executor);
+		this.url = url;
+	}
+
+	/**
+	 * For subclasses that know the size of the image in advance and
+	 * decode it in {@link #decode} on their own.
+	 * @param description
+	 * @param width
+	 * @param height
+	 * @param executor The executor that will decode the image.
+	 */
+	protected LazyIcon(String description, int width, int height, Executor executor) {
+		super();
+		this.executor = executor;
+		this.width = width;
+		this.height = height;
+		setDescription(description);
+	}
+
+	/**
+	 * @return The location of the image or <code>null</code> if it is decoded by a subclass.
+	 */
+	public URL getURL() {
+		return url;
+	}
+
+	/**
+	 * @return <code>true</code> if the image has been decoded.
+	 */
+	public boolean isLoaded() {
+		return image != null;
+	}
+
+	/**
+	 * Starts decoding the image in the background.
+	 * @return A future that completes once the image has been decoded.
+	 */
+	public synchronized CompletableFuture<Void> preload() {
+		if(loading == null) {
+			loading = CompletableFuture.runAsync(new Runnable() {
+				public void run() {
+					load();
+				}
+			}, executor);
+		}
+		return loading;
+	}
+
+	private void load() {
+		Image decoded;
+		try {
+			decoded = decode();
+		} catch(RuntimeException e) {
+			logger.log(Level.WARNING, "Couldn't decode "+getDescription(), e);
+			decoded = null;
+		}
+		List<WeakReference<Component>> components;
+		boolean resized;
+		synchronized(this) {
+			int oldWidth = width;
+			int oldHeight = height;
+			width = decoded == null ? 0 : decoded.getWidth(null);
+			height = decoded == null ? 0 : decoded.getHeight(null);
+			resized = oldWidth != width || oldHeight != height;
+			image = decoded;
+			components = waiting;
+			waiting = null;
+		}
+		if(decoded != null) {
+			loaded(width, height);
+		}
+		repaint(components, resized);
+	}
+
+	/**
+	 * Decodes the image, this is called on a thread of the executor.
+	 * @return The completely loaded image or <code>null</code> if it couldn't be decoded.
+	 */
+	protected Image decode() {
+		ImageIcon decoded = new ImageIcon(url);
+		return decoded.getImageLoadStatus() == MediaTracker.COMPLETE ? decoded.getImage() : null;
+	}
+
+	/**
+	 * Called on the loading thread once the image has been decoded.
+	 * @param width
+	 * @param height
+	 */
+	protected void loaded(int width, int height) {
+	}
+
+	private static void repaint(final List<WeakReference<Component>> components, final boolean resized) {
+		if(components == null) {
+			return;
+		}
+		SwingUtilities.invokeLater(new Runnable() {
+			public void run() {
+				for(WeakReference<Component> ref : components) {
+					Component c = ref.get();
+					if(c == null) {
+						continue;
+					}
+					if(resized && c instanceof JComponent) {
+						((JComponent)c).revalidate();
+					}
+					c.repaint();
+				}
+			}
+		});
+	}
+
+	public void paintIcon(Component c, Graphics g, int x, int y) {
+		Image img = getImage(c);
+		if(img != null) {
+			g.drawImage(img, x, y, c);
+		}
+	}
+
+	/**
+	 * Returns the image or starts decoding it, the component will be repainted
+	 * once it has been decoded.
+	 */
+	private Image getImage(Component c) {
+		Image img = image;
+		if(img == null) {
+			synchronized(this) {
+				img = image;
+				if(img == null && c != null && (loading == null || !loading.isDone())) {
+					if(waiting == null) {
+						waiting = new ArrayList<WeakReference<Component>>(2);
+					}
+					waiting.add(new WeakReference<Component>(c));
+				}
+			}
+			if(img == null) {
+				// the placeholder is empty
+				preload();
+			}
+		}
+		return img;
+	}
+
+	public int getIconWidth() {
+		return width;
+	}
+
+	public int getIconHeight() {
+		return height;
+	}
+
+	/**
+	 * Doesn't wait for the image to be decoded, but starts decoding it.
+	 * @return The image or an empty placeholder of the size of the icon if it
+	 * 		hasn't been (or couldn't be) decoded.
+	 */
+	public Image getImage() {
+		Image img = image;
+		if(img != null) {
+			return img;
+		}
+		preload();
+		return new BufferedImage(Math.max(1, width), Math.max(1, height), BufferedImage.TYPE_INT_ARGB);
+	}
+
+	/**
+	 * @return A gray version of this icon that is painted once the image has been decoded.
+	 */
+	public synchronized Icon getDisabledIcon() {
+		if(disabledIcon == null) {
+			disabledIcon = new DisabledIcon();
+		}
+		return disabledIcon;
+	}
+
+	/**
+	 * Lets the button use the {@link #getDisabledIcon disabled icon} of its
+	 * icon whenever that is a LazyIcon instead of the one created by the
+	 * look and feel.
+	 * @param button
+	 */
+	public static void installDisabledIcon(AbstractButton button) {
+		updateDisabledIcon(button);
+		button.addPropertyChangeListener(AbstractButton.ICON_CHANGED_PROPERTY, DISABLED_ICON_UPDATER);
+	}
+
+	private static void updateDisabledIcon(AbstractButton button) {
+		Icon icon = button.getIcon();
+		if(icon instanceof LazyIcon) {
+			button.setDisabledIcon(((LazyIcon)icon).getDisabledIcon());
+		} else if(button.getDisabledIcon() instanceof DisabledIcon) {
+			// let the look and feel create it again
+			button.setDisabledIcon(null);
+		}
+	}
+
+	public int getImageLoadStatus() {
+		if(image != null) {
+			return MediaTracker.COMPLETE;
+		}
+		return loading != null && loading.isDone() ? MediaTracker.ERRORED : MediaTracker.LOADING;
+	}
+
+	public String toString() {
+		return getDescription();
+	}
+
+	/**
+	 * Paints the gray version of the image, it waits for the image just like
+	 * the icon itself.
+	 */
+	private class DisabledIcon implements Icon {
+		private Image gray;
+
+		public void paintIcon(Component c, Graphics g, int x, int y) {
+			Image img = getImage(c);
+			if(img == null) {
+				return;
+			}
+			if(gray == null) {
+				gray = GrayFilter.createDisabledImage(img);
+			}
+			g.drawImage(gray, x, y, c);
+		}
+
+		public int getIconWidth() {
+			return width;
+		}
+
+		public int getIconHeight() {
+			return height;
+		}
+	}
+}
@@ -17,56 +17,482 @@ package com.pagosoft.swing;
 
 import javax.swing.event.*;
 import javax.swing.*;
+import java.awt.Component;
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Logger;
 
 /**
  * <p>This class binds a ListModel to a JComponent, removing and adding
  * components that have been generated by the specified ComponentProvider
  * when the model changes.</p>
  *
- * <p>Install it through the static {@link #install}-method.</p>
+ * <p>Install it through the static {@link #install}-method. A binder keeps
+ * updating the component until it is {@link #uninstall uninstalled}, so a
+ * model that lives longer than the component keeps the component (and all
+ * components created for it) alive. Binders installed through
+ * {@link #installWeak} avoid this: the model only holds a weak reference
+ * to them and they are released once the component can be collected.</p>
+ *
+ * <p>When the contents of the model change, the components in the range
+ * of the event are created again. If the model doesn't say which elements
+ * have changed, the binder compares the new elements to the old ones: the
+ * components of the elements that are still part of the model are reused
+ * and only those that have moved are removed and added again, new components
+ * are only created for new elements.</p>
+ *
+ * <p>Menus may be bound lazily (see {@link #setLazyMenus}): the items of a
+ * {@link JMenu} are only created when it is selected for the first time.
+ * Until then the binder doesn't even listen to the model, the items are
+ * simply created from the state of the model at that time.</p>
+ *
+ * <p>All components of an event are added before the component is laid out
+ * and repainted once. Very large insertions can be spread over several
+ * iterations of the event loop (see {@link #setChunkSize}), the
+ * components appear in chunks and the user interface keeps responding
+ * in between.</p>
  *
  * @author Patrick Gotthardt
  */
 public class ListModelBinder implements ListDataListener {
+	private static Logger logger = Logger.getLogger("com.pagosoft.swing.ListModelBinder");
+	private static boolean lazyMenus = false;
+	private static int defaultChunkSize = 0;
+
+	// the weak listeners whose binders have been collected
+	private static final ReferenceQueue<ListModelBinder> collected = new ReferenceQueue<ListModelBinder>();
+	private static final AtomicInteger liveCount = new AtomicInteger();
+
 	private JComponent component;
 	private ComponentProvider provider;
-	private ListModel model;
+	private ListModel<?> model;
+	// the element of every component, in the same order
+	private List<Object> elements = new ArrayList<Object>();
+	private boolean weak;
+	// the listener registered at the model, null if the binder isn't bound
+	private ListDataListener listener;
+	// waits for the first selection of a lazy menu
+	private MenuListener menuListener;
+
+	private int chunkSize = defaultChunkSize;
+	// the elements of an insertion that are added in chunks, null if there is none
+	private Object[] pending;
+	private int pendingIndex;
+	private int pendingDone;
+	private boolean chunkScheduled;
+	private final Runnable chunkTask = new Runnable() {
+		public void run() {
+			chunkScheduled = false;
+			if(pending != null) {
+				addPending(chunkSize);
+			}
+		}
+	};
+	// checks if a contents change has left the components out of sync
+	private boolean syncScheduled;
+	private final Runnable syncTask = new Runnable() {
+		public void run() {
+			syncScheduled = false;
+			if(listener == null) {
+				return;
+			}
+			completePending();
+			if(getChildCount() != elements.size()) {
+				rebuild();
+			} else if(elements.size() != model.getSize()) {
+				diff();
+			}
+		}
+	};
 
-	protected ListModelBinder(JComponent component, ListModel model, ComponentProvider provider) {
+	protected ListModelBinder(JComponent component, ListModel<?> model, ComponentProvider provider) {
+		this(component, model, provider, false);
+	}
+
+	/**
+	 * @param weak <code>true</code> if the model should only hold a weak reference to the binder.
+	 */
+	protected ListModelBinder(JComponent component, ListModel<?> model, ComponentProvider provider, boolean weak) {
 		this.component = component;
 		this.provider = provider;
 		this.model = model;
+		this.weak = weak;
+		bind();
+	}
 
-		model.addListDataListener(this);
+	/**
+	 * Creates a binder that waits until the menu is selected for the first time.
+	 */
+	protected ListModelBinder(final JMenu menu, ListModel<?> model, ComponentProvider provider, boolean lazy, boolean weak) {
+		this.component = menu;
+		this.provider = provider;
+		this.model = model;
+		this.weak = weak;
+		if(!lazy) {
+			bind();
+			return;
+		}
+		menuListener = new MenuListener() {
+			public void menuSelected(MenuEvent e) {
+				menu.removeMenuListener(this);
+				menuListener = null;
+				logger.finest("Creating the items of "+menu.getText());
+				bind();
+			}
+
+			public void menuDeselected(MenuEvent e) {
+			}
+
+			public void menuCanceled(MenuEvent e) {
+			}
+		};
+		menu.addMenuListener(menuListener);
+	}
+
+	// starts listening to the model and creates the components
+	private void bind() {
+		if(weak) {
+			listener = new WeakListener(this, model);
+			// the component keeps the binder alive
+			component.putClientProperty(this, this);
+		} else {
+			listener = this;
+		}
+		model.addListDataListener(listener);
+		liveCount.incrementAndGet();
 
 		if(model.getSize() > 0) {
-			intervalAdded(new ListDataEvent(model, ListDataEvent.INTERVAL_ADDED, 0, model.getSize()));
+			intervalAdded(new ListDataEvent(model, ListDataEvent.INTERVAL_ADDED, 0, model.getSize()-1));
 		}
 	}
 
+	// the bounds of an interval are inclusive, but might be given in any order
 	public void intervalAdded(ListDataEvent e) {
-		if(e.getIndex0() == e.getIndex1() && e.getIndex0() > -1) {
-			component.add(provider.createComponent(model.getElementAt(e.getIndex0())), e.getIndex0());
-		} else {
-			for(int i = e.getIndex0(); i < e.getIndex1(); i++) {
-				component.add(provider.createComponent(model.getElementAt(i)), i);
+		int index0 = Math.min(e.getIndex0(), e.getIndex1());
+		int index1 = Math.max(e.getIndex0(), e.getIndex1());
+		if(index0 < 0) {
+			return;
+		}
+		completePending();
+		int count = index1 - index0 + 1;
+		if(chunkSize > 0 && count > chunkSize) {
+			// the elements are taken now, the next events of the model build on this state
+			pending = new Object[count];
+			for(int i = 0; i < count; i++) {
+				pending[i] = model.getElementAt(index0+i);
 			}
+			pendingIndex = index0;
+			pendingDone = 0;
+			addPending(chunkSize);
+			return;
+		}
+		for(int i = index0; i <= index1; i++) {
+			Object element = model.getElementAt(i);
+			component.add(provider.createComponent(element), i);
+			elements.add(i, element);
+		}
+		changed();
+	}
+
+	// adds the next components of the pending insertion and schedules the rest
+	private void addPending(int max) {
+		int end = (int)Math.min(pending.length, (long)pendingDone + max);
+		for(int i = pendingDone; i < end; i++) {
+			component.add(provider.createComponent(pending[i]), pendingIndex+i);
+			elements.add(pendingIndex+i, pending[i]);
+		}
+		pendingDone = end;
+		if(end == pending.length) {
+			pending = null;
+		} else if(!chunkScheduled) {
+			chunkScheduled = true;
+			SwingUtilities.invokeLater(chunkTask);
+		}
+		changed();
+	}
+
+	// the events of the model are relative to the complete insertion
+	private void completePending() {
+		if(pending != null) {
+			addPending(Integer.MAX_VALUE);
 		}
 	}
 
 	public void intervalRemoved(ListDataEvent e) {
-		if(e.getIndex0() == e.getIndex1() && e.getIndex0() > -1) {
-			component.remove(e.getIndex0());
+		int index0 = Math.min(e.getIndex0(), e.getIndex1());
+		int index1 = Math.max(e.getIndex0(), e.getIndex1());
+		if(index0 < 0) {
+			return;
+		}
+		completePending();
+		for(int i = index1; i >= index0; i--) {
+			component.remove(i);
+		}
+		elements.subList(index0, index1+1).clear();
+		changed();
+	}
+
+	/**
+	 * <p>The components of the positions in the range of the event are
+	 * created again, even if the element is still the same: its contents
+	 * may have changed. The components outside the range aren't touched.
+	 * If the size of the model differs from the number of components once
+	 * the current events have been handled, they are compared like below.</p>
+	 * <p>If the event has no range (the indices are negative), the elements
+	 * of the model are compared to those of the components. Only the
+	 * part between the elements that are the same at the start and the end is
+	 * changed: the elements that keep their order keep their components, the
+	 * components of moved elements are removed and inserted at their new
+	 * position and only new elements get new components.</p>
+	 */
+	public void contentsChanged(ListDataEvent e) {
+		completePending();
+		if(getChildCount() != elements.size()) {
+			// somebody else changed the component
+			rebuild();
+			return;
+		}
+		int index0 = Math.min(e.getIndex0(), e.getIndex1());
+		int index1 = Math.max(e.getIndex0(), e.getIndex1());
+		if(index0 >= 0) {
+			// the following events of the model may build on this range only
+			replace(index0, Math.min(index1, Math.min(elements.size(), model.getSize())-1));
+			if(elements.size() != model.getSize() && !syncScheduled) {
+				// unless the model has changed its size without telling
+				syncScheduled = true;
+				SwingUtilities.invokeLater(syncTask);
+			}
 		} else {
-			for(int i = e.getIndex1()-1; i >= e.getIndex0(); i--) {
+			diff();
+		}
+	}
+
+	// creates the components of the range again
+	private void replace(int index0, int index1) {
+		if(index0 > index1) {
+			return;
+		}
+		for(int i = index1; i >= index0; i--) {
+			component.remove(i);
+		}
+		for(int i = index0; i <= index1; i++) {
+			Object element = model.getElementAt(i);
+			component.add(provider.createComponent(element), i);
+			elements.set(i, element);
+		}
+		changed();
+	}
+
+	private void diff() {
+		int oldSize = elements.size();
+		int newSize = model.getSize();
+		int start = 0;
+		while(start < oldSize && start < newSize && same(elements.get(start), model.getElementAt(start))) {
+			start++;
+		}
+		int oldEnd = oldSize;
+		int newEnd = newSize;
+		while(oldEnd > start && newEnd > start && same(elements.get(oldEnd-1), model.getElementAt(newEnd-1))) {
+			oldEnd--;
+			newEnd--;
+		}
+		if(start == oldEnd && start == newEnd) {
+			return;
+		}
+
+		// the old positions of each element, chained from the first to the last
+		Map<Object, Integer> first = new HashMap<Object, Integer>();
+		int[] next = new int[oldEnd-start];
+		for(int i = oldEnd-1; i >= start; i--) {
+			Integer head = first.put(elements.get(i), Integer.valueOf(i));
+			next[i-start] = head == null ? -1 : head.intValue();
+		}
+		Object[] newElements = new Object[newEnd-start];
+		int[] oldIndex = new int[newElements.length];
+		for(int j = 0; j < newElements.length; j++) {
+			newElements[j] = model.getElementAt(start+j);
+			Integer head = first.get(newElements[j]);
+			if(head == null) {
+				oldIndex[j] = -1;
+			} else {
+				oldIndex[j] = head.intValue();
+				int following = next[oldIndex[j]-start];
+				if(following == -1) {
+					first.remove(newElements[j]);
+				} else {
+					first.put(newElements[j], Integer.valueOf(following));
+				}
+			}
+		}
+
+		boolean[] stays = longestIncreasing(oldIndex);
+		boolean[] oldStays = new boolean[oldEnd-start];
+		Component[] reused = new Component[newElements.length];
+		for(int j = 0; j < newElements.length; j++) {
+			if(stays[j]) {
+				oldStays[oldIndex[j]-start] = true;
+			} else if(oldIndex[j] != -1) {
+				reused[j] = getChild(oldIndex[j]);
+			}
+		}
+		for(int i = oldEnd-1; i >= start; i--) {
+			if(!oldStays[i-start]) {
 				component.remove(i);
 			}
 		}
+		for(int j = 0; j < newElements.length; j++) {
+			if(!stays[j]) {
+				Component child = reused[j] != null ? reused[j] : provider.createComponent(newElements[j]);
+				component.add(child, start+j);
+			}
+		}
+		elements.subList(start, oldEnd).clear();
+		elements.addAll(start, Arrays.asList(newElements));
+		changed();
 	}
 
-	public void contentsChanged(ListDataEvent e) {
+	// creates all components again
+	private void rebuild() {
 		component.removeAll();
-		intervalAdded(new ListDataEvent(model, ListDataEvent.INTERVAL_ADDED, 0, model.getSize()));
+		elements.clear();
+		if(model.getSize() > 0) {
+			intervalAdded(new ListDataEvent(model, ListDataEvent.INTERVAL_ADDED, 0, model.getSize()-1));
+		} else {
+			changed();
+		}
+	}
+
+	private static boolean same(Object a, Object b) {
+		return a == b || (a != null && a.equals(b));
+	}
+
+	/**
+	 * Marks the longest increasing subsequence of the indices that aren't -1,
+	 * in O(n log n).
+	 */
+	private static boolean[] longestIncreasing(int[] indices) {
+		int n = indices.length;
+		// tails[k]: the position that ends the best subsequence of length k+1
+		int[] tails = new int[n];
+		int[] previous = new int[n];
+		int length = 0;
+		for(int j = 0; j < n; j++) {
+			if(indices[j] == -1) {
+				continue;
+			}
+			int low = 0;
+			int high = length;
+			while(low < high) {
+				int mid = (low + high) >>> 1;
+				if(indices[tails[mid]] < indices[j]) {
+					low = mid+1;
+				} else {
+					high = mid;
+				}
+			}
+			previous[j] = low > 0 ? tails[low-1] : -1;
+			tails[low] = j;
+			if(low == length) {
+				length++;
+			}
+		}
+		boolean[] marked = new boolean[n];
+		for(int j = length > 0 ? tails[length-1] : -1; j != -1; j = previous[j]) {
+			marked[j] = true;
+		}
+		return marked;
+	}
+
+	// a JMenu keeps its items in its popup menu
+	private int getChildCount() {
+		if(component instanceof JMenu) {
+			return ((JMenu)component).getMenuComponentCount();
+		}
+		return component.getComponentCount();
+	}
+
+	private Component getChild(int index) {
+		if(component instanceof JMenu) {
+			return ((JMenu)component).getMenuComponent(index);
+		}
+		return component.getComponent(index);
+	}
+
+	/**
+	 * Stops updating the component. The components that have been created
+	 * stay where they are.
+	 */
+	public void uninstall() {
+		pending = null;
+		if(menuListener != null) {
+			((JMenu)component).removeMenuListener(menuListener);
+			menuListener = null;
+		}
+		if(listener == null) {
+			return;
+		}
+		if(weak) {
+			component.putClientProperty(this, null);
+			((WeakListener)listener).release();
+		} else {
+			model.removeListDataListener(listener);
+			liveCount.decrementAndGet();
+		}
+		listener = null;
+	}
+
+	/**
+	 * @return <code>true</code> if the binder listens to the model.
+	 */
+	public boolean isInstalled() {
+		return listener != null;
+	}
+
+	/**
+	 * Insertions of more than <code>chunkSize</code> elements are spread
+	 * over several iterations of the event loop, <code>chunkSize</code>
+	 * components at a time. If the model changes before all of them have
+	 * been added, the rest is added right away.
+	 * @param chunkSize The number of components to add at a time, 0 to add
+	 * 		all of them at once.
+	 */
+	public void setChunkSize(int chunkSize) {
+		if(chunkSize < 0) {
+			throw new IllegalArgumentException("chunkSize must not be negative");
+		}
+		this.chunkSize = chunkSize;
+	}
+
+	public int getChunkSize() {
+		return chunkSize;
+	}
+
+	/**
+	 * @return <code>true</code> if some components of an insertion haven't been added yet.
+	 */
+	public boolean isPending() {
+		return pending != null;
+	}
+
+	public JComponent getComponent() {
+		return component;
+	}
+
+	public ListModel<?> getModel() {
+		return model;
+	}
+
+	// the layout is done once for all changes of an event (and all events until the next paint)
+	private void changed() {
+		component.revalidate();
+		component.repaint();
 	}
 
 	/**
@@ -76,8 +502,145 @@ public class ListModelBinder implements ListDataListener {
 	 * @param component The target component that should be updated with the model.
 	 * @param model The model that is supposed to be observed.
 	 * @param provider The component provider that'll be used to generate the components.
+	 * @return The binder, to {@link #uninstall} it.
 	 */
-	public static void install(JComponent component, ListModel model, ComponentProvider provider) {
-		new ListModelBinder(component, model, provider);
+	public static ListModelBinder install(JComponent component, ListModel<?> model, ComponentProvider provider) {
+		expungeCollected();
+		return new ListModelBinder(component, model, provider);
+	}
+
+	/**
+	 * Same as {@link #install}, but the model only holds a weak reference to the
+	 * binder. The binder lives as long as the component and stops listening to
+	 * the model after the component has been collected.
+	 *
+	 * @param component The target component that should be updated with the model.
+	 * @param model The model that is supposed to be observed.
+	 * @param provider The component provider that'll be used to generate the components.
+	 * @return The binder, to {@link #uninstall} it.
+	 */
+	public static ListModelBinder installWeak(JComponent component, ListModel<?> model, ComponentProvider provider) {
+		expungeCollected();
+		return new ListModelBinder(component, model, provider, true);
+	}
+
+	/**
+	 * Installs a ListModelBinder for the items of a menu. If lazy menus are
+	 * enabled, the items are created when the menu is selected for the first time.
+	 * The binder is weak (see {@link #installWeak}).
+	 *
+	 * @param menu The menu that should be updated with the model.
+	 * @param model The model that is supposed to be observed.
+	 * @param provider The component provider that'll be used to generate the items.
+	 * @return The binder, to {@link #uninstall} it.
+	 * @see #setLazyMenus
+	 */
+	public static ListModelBinder installMenu(JMenu menu, ListModel<?> model, ComponentProvider provider) {
+		expungeCollected();
+		return new ListModelBinder(menu, model, provider, lazyMenus, true);
+	}
+
+	/**
+	 * <p>Enables or disables the lazy creation of menu items for all menus
+	 * that are installed afterwards through {@link #installMenu}.</p>
+	 * <p>This saves the time and memory for the items of menus that are never
+	 * opened, but accelerators only work for the items that have been created:
+	 * a {@link JMenuBar} only knows about the keystrokes of the items it
+	 * contains. Actions with accelerators have to be registered in the
+	 * InputMap of the window as well (or live in a menu that isn't lazy).</p>
+	 * @param lazy
+	 */
+	public static void setLazyMenus(boolean lazy) {
+		lazyMenus = lazy;
+	}
+
+	public static boolean isLazyMenus() {
+		return lazyMenus;
+	}
+
+	/**
+	 * Sets the chunk size of the binders that are installed afterwards,
+	 * which includes the creation of their initial components.
+	 * @param chunkSize
+	 * @see #setChunkSize
+	 */
+	public static void setDefaultChunkSize(int chunkSize) {
+		if(chunkSize < 0) {
+			throw new IllegalArgumentException("chunkSize must not be negative");
+		}
+		defaultChunkSize = chunkSize;
+	}
+
+	public static int getDefaultChunkSize() {
+		return defaultChunkSize;
+	}
+
+	/**
+	 * For diagnostics.
+	 * @return The number of binders that listen to their models, i.e. that
+	 * 		have neither been uninstalled nor collected.
+	 */
+	public static int getLiveBinderCount() {
+		expungeCollected();
+		return liveCount.get();
+	}
+
+	// removes the listeners of the collected binders from their models
+	private static void expungeCollected() {
+		Reference<? extends ListModelBinder> ref;
+		while((ref = collected.poll()) != null) {
+			((WeakListener)ref).release();
+		}
+	}
+
+	/**
+	 * Forwards the events of the model as long as the binder is reachable.
+	 */
+	private static class WeakListener extends WeakReference<ListModelBinder> implements ListDataListener {
+		private ListModel<?> model;
+		private boolean released;
+
+		public WeakListener(ListModelBinder binder, ListModel<?> model) {
+			super(binder, collected);
+			this.model = model;
+		}
+
+		public void intervalAdded(ListDataEvent e) {
+			ListModelBinder binder = get();
+			if(binder == null) {
+				release();
+			} else {
+				binder.intervalAdded(e);
+			}
+		}
+
+		public void intervalRemoved(ListDataEvent e) {
+			ListModelBinder binder = get();
+			if(binder == null) {
+				release();
+			} else {
+				binder.intervalRemoved(e);
+			}
+		}
+
+		public void contentsChanged(ListDataEvent e) {
+			ListModelBinder binder = get();
+			if(binder == null) {
+				release();
+			} else {
+				binder.contentsChanged(e);
+			}
+		}
+
+		// may be called by the queue and by an event, but counts only once
+		public synchronized void release() {
+			if(released) {
+				return;
+			}
+			released = true;
+			clear();
+			model.removeListDataListener(this);
+			liveCount.decrementAndGet();
+		}
 	}
-}
\ No newline at end of file
+}
@@ -0,0 +1,99 @@
+/*
+ * Copyright 2005 Patrick Gotthardt
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.pagosoft.action;
+
+import java.awt.event.ActionEvent;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * <p>Run with <code>java com.pagosoft.action.ActionLocaleTest</code>,
+ * throws an AssertionError if a check fails.</p>
+ *
+ * @author Patrick Gotthardt
+ */
+public class ActionLocaleTest {
+	public static void main(String[] args) throws Exception {
+		providersAreCalledSequentially();
+		System.out.println("ActionLocaleTest passed");
+	}
+
+	// a provider that isn't thread-safe is never called by two threads at once
+	static void providersAreCalledSequentially() throws Exception {
+		Provider provider = new Provider();
+		AbstractSystemAction.setProvider(provider);
+		List<AbstractSystemAction> actions = new ArrayList<AbstractSystemAction>();
+		for(int i = 0; i < 2000; i++) {
+			actions.add(new TestAction("action"+i));
+		}
+		ExecutorService executor = Executors.newFixedThreadPool(8);
+		try {
+			ActionLocale.reload(actions, executor).get();
+		} finally {
+			executor.shutdown();
+			AbstractSystemAction.setProvider(null);
+		}
+		check(provider.calls.get() > 2000, "the resources have been resolved");
+		check(provider.maxActive.get() == 1, "called by "+provider.maxActive.get()+" threads at once");
+	}
+
+	private static void check(boolean condition, String message) {
+		if(!condition) {
+			throw new AssertionError(message);
+		}
+	}
+
+	private static class Provider implements ActionResourceProvider {
+		private final AtomicInteger active = new AtomicInteger();
+		private final AtomicInteger maxActive = new AtomicInteger();
+		private final AtomicInteger calls = new AtomicInteger();
+
+		public String getString(Object action, String key) {
+			int count = active.incrementAndGet();
+			try {
+				if(count > maxActive.get()) {
+					maxActive.set(count);
+				}
+				if(calls.incrementAndGet()%64 == 0) {
+					Thread.sleep(1);
+				}
+				return "Name";
+			} catch(InterruptedException e) {
+				throw new IllegalStateException(e);
+			} finally {
+				active.decrementAndGet();
+			}
+		}
+
+		public Object getConfig(Object action, String id) {
+			return null;
+		}
+	}
+
+	private static class TestAction extends AbstractSystemAction {
+		private static final long serialVersionUID = 1L;
+
+		public TestAction(String id) {
+			super(id);
+		}
+
+		public void actionPerformed(ActionEvent e) {
+		}
+	}
+}
@@ -0,0 +1,82 @@
+/*
+ * Copyright 2005 Patrick Gotthardt
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.pagosoft.action;
+
+import javax.swing.*;
+import java.awt.event.ActionEvent;
+import java.util.Arrays;
+
+/**
+ * <p>Run with <code>java com.pagosoft.action.ConcurrentActionContainerTest</code>,
+ * throws an AssertionError if a check fails.</p>
+ *
+ * @author Patrick Gotthardt
+ */
+public class ConcurrentActionContainerTest {
+	private static final Action A = new Named("a");
+	private static final Action B = new Named("b");
+	private static final Action C = new Named("c");
+	private static final Action D = new Named("d");
+
+	public static void main(String[] args) throws Exception {
+		indexesWhileQueued();
+		System.out.println("ConcurrentActionContainerTest passed");
+	}
+
+	// the EDT uses its own indexes while the changes of another thread are held back
+	static void indexesWhileQueued() throws Exception {
+		final ConcurrentActionContainer c = new ConcurrentActionContainer();
+		c.addAll(Arrays.asList(A, B, C));
+		waitForEdt();
+		c.beginUpdate();
+		c.remove(0);
+		SwingUtilities.invokeAndWait(new Runnable() {
+			public void run() {
+				check(c.getSize() == 3, "the removal is held back");
+				c.remove(c.indexOf(B));
+				c.add(c.indexOf(C), D);
+				// removed by the queued change already
+				c.remove(c.indexOf(A));
+			}
+		});
+		check(Arrays.equals(c.getSnapshot(), new Object[] {D, C}), "shadow is [d, c]");
+		c.endUpdate();
+		waitForEdt();
+		check(c.getSize() == 2 && c.getElementAt(0) == D && c.getElementAt(1) == C, "model is [d, c]");
+	}
+
+	private static void waitForEdt() throws Exception {
+		SwingUtilities.invokeAndWait(new Runnable() {
+			public void run() {
+			}
+		});
+	}
+
+	private static void check(boolean condition, String message) {
+		if(!condition) {
+			throw new AssertionError(message);
+		}
+	}
+
+	private static class Named extends AbstractAction {
+		public Named(String name) {
+			super(name);
+		}
+
+		public void actionPerformed(ActionEvent e) {
+		}
+	}
+}
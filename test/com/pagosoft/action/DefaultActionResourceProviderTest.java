@@ -0,0 +1,74 @@
+/*
+ * Copyright 2005 Patrick Gotthardt
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.pagosoft.action;
+
+import com.pagosoft.action.bundle.Bundle;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Handler;
+import java.util.logging.LogRecord;
+import java.util.logging.Logger;
+
+/**
+ * <p>Run with <code>java com.pagosoft.action.DefaultActionResourceProviderTest</code>,
+ * throws an AssertionError if a check fails.</p>
+ *
+ * @author Patrick Gotthardt
+ */
+public class DefaultActionResourceProviderTest {
+	public static void main(String[] args) {
+		warningsAreLimited();
+		System.out.println("DefaultActionResourceProviderTest passed");
+	}
+
+	static void warningsAreLimited() {
+		final List<String> messages = new ArrayList<String>();
+		Logger logger = Logger.getLogger("com.pagosoft.action.DefaultActionResourceProvider");
+		logger.setUseParentHandlers(false);
+		logger.addHandler(new Handler() {
+			public void publish(LogRecord record) {
+				messages.add(record.getMessage());
+			}
+
+			public void flush() {
+			}
+
+			public void close() {
+			}
+		});
+		DefaultActionResourceProvider provider = new DefaultActionResourceProvider();
+		// an instance of a class in the package of the bundle
+		Object owner = new Bundle();
+		check(provider.getString(owner, "known").equals("Known"), "the key is found");
+		check(messages.isEmpty(), "nothing is reported");
+		provider.getString(owner, "missing");
+		provider.clearCache();
+		provider.getString(owner, "missing");
+		check(messages.size() == 1, "a missing key is reported once");
+		for(int i = 0; i < 500; i++) {
+			provider.getString(owner, "missing"+i);
+		}
+		check(messages.size() == DefaultActionResourceProvider.MAX_WARNINGS, "at most "+DefaultActionResourceProvider.MAX_WARNINGS+" warnings");
+		check(messages.get(messages.size()-1).contains("suppressed"), "the suppression is announced");
+	}
+
+	private static void check(boolean condition, String message) {
+		if(!condition) {
+			throw new AssertionError(message);
+		}
+	}
+}
@@ -0,0 +1,73 @@
+/*
+ * Copyright 2005 Patrick Gotthardt
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.pagosoft.action;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * <p>Run with <code>java com.pagosoft.action.ItemContainerTest</code>,
+ * throws an AssertionError if a check fails.</p>
+ *
+ * @author Patrick Gotthardt
+ */
+public class ItemContainerTest {
+	public static void main(String[] args) {
+		hashCodeChanges();
+		equalsWithoutHashCode();
+		System.out.println("ItemContainerTest passed");
+	}
+
+	// the items are found by equals even if their hashCode has changed
+	static void hashCodeChanges() {
+		ItemContainer c = new ItemContainer();
+		List<String> a = new ArrayList<String>();
+		List<String> b = new ArrayList<String>();
+		c.add(a);
+		c.add(b);
+		a.add("changes the hashCode");
+		check(c.indexOf(a) == 0, "a is found");
+		c.remove(a);
+		check(c.getSize() == 1 && c.getElementAt(0) == b, "a has been removed");
+	}
+
+	static void equalsWithoutHashCode() {
+		ItemContainer c = new ItemContainer();
+		c.add(new Item("a"));
+		c.add(new Item("b"));
+		check(c.indexOf(new Item("b")) == 1, "b is found by equals");
+		c.remove(new Item("a"));
+		check(c.getSize() == 1, "a has been removed");
+	}
+
+	private static void check(boolean condition, String message) {
+		if(!condition) {
+			throw new AssertionError(message);
+		}
+	}
+
+	private static class Item {
+		private String name;
+
+		public Item(String name) {
+			this.name = name;
+		}
+
+		public boolean equals(Object o) {
+			return o instanceof Item && ((Item)o).name.equals(name);
+		}
+	}
+}
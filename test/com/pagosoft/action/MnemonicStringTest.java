@@ -0,0 +1,56 @@
+/*
+ * Copyright 2005 Patrick Gotthardt
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.pagosoft.action;
+
+/**
+ * <p>Run with <code>java com.pagosoft.action.MnemonicStringTest</code>,
+ * throws an AssertionError if a check fails.</p>
+ *
+ * @author Patrick Gotthardt
+ */
+public class MnemonicStringTest {
+	public static void main(String[] args) {
+		modifiable();
+		bounded();
+		System.out.println("MnemonicStringTest passed");
+	}
+
+	// every caller gets its own instance it may change
+	static void modifiable() {
+		AbstractSystemAction.MnemonicString a = AbstractSystemAction.getMnemonicString("&Open@control O");
+		a.setName("Changed");
+		a.setMnemonic('C');
+		AbstractSystemAction.MnemonicString b = AbstractSystemAction.getMnemonicString("&Open@control O");
+		check(b.getName().equals("Open") && b.getMnemonic() == 'O', "the cache is unchanged");
+		check(b.getKeyStroke() != null, "the keystroke is parsed");
+	}
+
+	// labels created at runtime don't fill up the cache
+	static void bounded() {
+		AbstractSystemAction.MnemonicString first = AbstractSystemAction.sharedMnemonicString("&First");
+		check(AbstractSystemAction.sharedMnemonicString("&First") == first, "the label is cached");
+		for(int i = 0; i < 10000; i++) {
+			AbstractSystemAction.sharedMnemonicString("Document "+i);
+		}
+		check(AbstractSystemAction.sharedMnemonicString("&First") != first, "the label has been evicted");
+	}
+
+	private static void check(boolean condition, String message) {
+		if(!condition) {
+			throw new AssertionError(message);
+		}
+	}
+}
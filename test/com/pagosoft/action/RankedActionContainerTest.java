@@ -0,0 +1,83 @@
+/*
+ * Copyright 2005 Patrick Gotthardt
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.pagosoft.action;
+
+import javax.swing.*;
+import java.awt.event.ActionEvent;
+
+/**
+ * <p>Run with <code>java com.pagosoft.action.RankedActionContainerTest</code>,
+ * throws an AssertionError if a check fails.</p>
+ *
+ * @author Patrick Gotthardt
+ */
+public class RankedActionContainerTest {
+	public static void main(String[] args) {
+		renormalizeReordersBeforeUse();
+		System.out.println("RankedActionContainerTest passed");
+	}
+
+	// the scores of older uses underflow to 0 when they are scaled back,
+	// which changes the order before the used action is looked up
+	static void renormalizeReordersBeforeUse() {
+		ManualClock c = new ManualClock(1000);
+		Action a = new TestAction("A");
+		Action b = new TestAction("B");
+		c.add(a);
+		c.add(b);
+		c.recordUse(b);
+		check(c.getElementAt(0) == b, "B is used, so it comes first");
+
+		c.time += 1100 * 1000L;
+		c.recordUse(a);
+		check(c.getElementAt(0) == a, "A has the only use that still counts");
+		check(c.getElementAt(1) == b, "B comes second");
+		check(c.getScore(a) == 1.0, "score of A");
+		check(c.getScore(b) == 0.0, "score of B");
+
+		c.recordUse(b);
+		c.recordUse(b);
+		check(c.getElementAt(0) == b, "B has been used twice");
+		check(c.indexOf(a) == 1, "A is still found");
+	}
+
+	private static void check(boolean condition, String message) {
+		if(!condition) {
+			throw new AssertionError(message);
+		}
+	}
+
+	private static class ManualClock extends RankedActionContainer {
+		private long time;
+
+		public ManualClock(long halfLife) {
+			super("ranked", halfLife);
+		}
+
+		protected long currentTime() {
+			return time;
+		}
+	}
+
+	private static class TestAction extends AbstractAction {
+		public TestAction(String name) {
+			super(name);
+		}
+
+		public void actionPerformed(ActionEvent e) {
+		}
+	}
+}
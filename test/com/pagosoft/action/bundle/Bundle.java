@@ -0,0 +1,31 @@
+/*
+ * Copyright 2005 Patrick Gotthardt
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.pagosoft.action.bundle;
+
+import java.util.ListResourceBundle;
+
+/**
+ * <p>The bundle of the classes in this package, used by the tests.</p>
+ *
+ * @author Patrick Gotthardt
+ */
+public class Bundle extends ListResourceBundle {
+	protected Object[][] getContents() {
+		return new Object[][] {
+			{"known", "Known"}
+		};
+	}
+}
@@ -0,0 +1,149 @@
+/*
+ * Copyright 2005 Patrick Gotthardt
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.pagosoft.action.processor;
+
+import com.pagosoft.action.ActionManager;
+
+import javax.annotation.processing.Processor;
+import javax.tools.*;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * <p>Run with <code>java com.pagosoft.action.processor.ActionIndexProcessorTest</code>
+ * (PgsAction has to be on the class path), throws an AssertionError if a
+ * check fails.</p>
+ *
+ * @author Patrick Gotthardt
+ */
+public class ActionIndexProcessorTest {
+	public static void main(String[] args) throws IOException {
+		File dir = Files.createTempDirectory("pgsaction").toFile();
+		try {
+			indexWithActionMethods(new File(dir, "methods"));
+			indexWithoutAnnotations(new File(dir, "plain"));
+		} finally {
+			delete(dir);
+		}
+		System.out.println("ActionIndexProcessorTest passed");
+	}
+
+	// the ActionMethodProcessor must not hide the round from the index processor
+	static void indexWithActionMethods(File dir) throws IOException {
+		write(dir, "app/Open.java",
+				"package app;",
+				"public class Open extends javax.swing.AbstractAction {",
+				"	public void actionPerformed(java.awt.event.ActionEvent e) {}",
+				"}");
+		write(dir, "app/Editor.java",
+				"package app;",
+				"public class Editor {",
+				"	@com.pagosoft.action.ActionMethod public void save() {}",
+				"}");
+		compile(dir);
+		checkIndex(dir, "app.Open");
+		check(new File(dir, "out/app/Editor$$ActionMethodTable.class").isFile(), "the ActionMethodTable is generated");
+	}
+
+	static void indexWithoutAnnotations(File dir) throws IOException {
+		write(dir, "app/Open.java",
+				"package app;",
+				"public class Open extends javax.swing.AbstractAction {",
+				"	public void actionPerformed(java.awt.event.ActionEvent e) {}",
+				"	public static class Nested extends Open {}",
+				"	public class Inner extends Open {}",
+				"}");
+		write(dir, "app/Hidden.java",
+				"package app;",
+				"class Hidden extends Open {}");
+		write(dir, "app/WithArgument.java",
+				"package app;",
+				"public class WithArgument extends Open {",
+				"	public WithArgument(String s) {}",
+				"}");
+		compile(dir);
+		checkIndex(dir, "app.Open", "app.Open$Nested");
+	}
+
+	private static void write(File dir, String name, String... lines) throws IOException {
+		File file = new File(dir, "src/"+name);
+		file.getParentFile().mkdirs();
+		Files.write(file.toPath(), Arrays.asList(lines), StandardCharsets.UTF_8);
+	}
+
+	private static void compile(File dir) throws IOException {
+		JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+		StandardJavaFileManager fileManager = compiler.getStandardFileManager(null, null, null);
+		try {
+			File out = new File(dir, "out");
+			out.mkdirs();
+			List<File> sources = new ArrayList<File>();
+			collect(new File(dir, "src"), sources);
+			List<String> options = Arrays.asList(
+					"-d", out.getPath(),
+					"-cp", System.getProperty("java.class.path"));
+			JavaCompiler.CompilationTask task = compiler.getTask(null, fileManager, null, options, null,
+					fileManager.getJavaFileObjectsFromFiles(sources));
+			task.setProcessors(Arrays.<Processor>asList(new ActionMethodProcessor(), new ActionIndexProcessor()));
+			check(task.call().booleanValue(), "compilation failed");
+		} finally {
+			fileManager.close();
+		}
+	}
+
+	private static void collect(File dir, List<File> sources) {
+		for(File file : dir.listFiles()) {
+			if(file.isDirectory()) {
+				collect(file, sources);
+			} else {
+				sources.add(file);
+			}
+		}
+	}
+
+	private static void delete(File file) {
+		File[] children = file.listFiles();
+		if(children != null) {
+			for(File child : children) {
+				delete(child);
+			}
+		}
+		file.delete();
+	}
+
+	private static void checkIndex(File dir, String... expected) throws IOException {
+		File index = new File(dir, "out/"+ActionManager.INDEX_RESOURCE);
+		check(index.isFile(), "no index has been written");
+		List<String> names = new ArrayList<String>();
+		for(String line : Files.readAllLines(index.toPath(), StandardCharsets.UTF_8)) {
+			if(!line.startsWith("#")) {
+				names.add(line);
+			}
+		}
+		check(names.equals(Arrays.asList(expected)), "expected "+Arrays.asList(expected)+" but was "+names);
+	}
+
+	private static void check(boolean condition, String message) {
+		if(!condition) {
+			throw new AssertionError(message);
+		}
+	}
+}
@@ -0,0 +1,117 @@
+/*
+ * Copyright 2005 Patrick Gotthardt
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.pagosoft.swing;
+
+import javax.swing.*;
+import java.awt.*;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Predicate;
+
+/**
+ * <p>Run with <code>java com.pagosoft.swing.FilteredListModelTest</code>,
+ * throws an AssertionError if a check fails.</p>
+ *
+ * @author Patrick Gotthardt
+ */
+public class FilteredListModelTest {
+	private static final Predicate<Object> STARTS_WITH_A = new Predicate<Object>() {
+		public boolean test(Object o) {
+			return o.toString().startsWith("a");
+		}
+	};
+
+	public static void main(String[] args) throws Exception {
+		SwingUtilities.invokeAndWait(new Runnable() {
+			public void run() {
+				changedAndAdded();
+				removedAndChanged();
+				mixedRuns();
+			}
+		});
+		System.out.println("FilteredListModelTest passed");
+	}
+
+	// element 0 stays, element 1 becomes accepted
+	static void changedAndAdded() {
+		Source source = new Source("a1", "b");
+		JPanel panel = bind(source);
+		source.change(0, 1, "a1", "a2");
+		checkComponents(panel, "a1", "a2");
+	}
+
+	// element 0 is no longer accepted, element 1 stays
+	static void removedAndChanged() {
+		Source source = new Source("a1", "a2", "a3");
+		JPanel panel = bind(source);
+		source.change(0, 1, "b", "a4");
+		checkComponents(panel, "a4", "a3");
+	}
+
+	static void mixedRuns() {
+		Source source = new Source("a1", "b1", "a2", "a3", "b2", "a4", "b3");
+		JPanel panel = bind(source);
+		source.change(0, 6, "b4", "a5", "a6", "b5", "a7", "a8", "b6");
+		checkComponents(panel, "a5", "a6", "a7", "a8");
+	}
+
+	private static JPanel bind(Source source) {
+		FilteredListModel view = new FilteredListModel(source, STARTS_WITH_A);
+		JPanel panel = new JPanel();
+		ListModelBinder.install(panel, view, new ComponentProvider() {
+			public JComponent createComponent(Object obj) {
+				return new JLabel(String.valueOf(obj));
+			}
+		});
+		return panel;
+	}
+
+	private static void checkComponents(JPanel panel, String... expected) {
+		Component[] components = panel.getComponents();
+		String[] texts = new String[components.length];
+		for(int i = 0; i < components.length; i++) {
+			texts[i] = ((JLabel)components[i]).getText();
+		}
+		if(!Arrays.equals(texts, expected)) {
+			throw new AssertionError("expected "+Arrays.toString(expected)+" but was "+Arrays.toString(texts));
+		}
+	}
+
+	// sends a single contentsChanged for a range, like models that replace
+	// several elements at once
+	private static class Source extends AbstractListModel<Object> {
+		private List<Object> elements;
+
+		public Source(Object... elements) {
+			this.elements = Arrays.asList(elements);
+		}
+
+		public int getSize() {
+			return elements.size();
+		}
+
+		public Object getElementAt(int index) {
+			return elements.get(index);
+		}
+
+		public void change(int index0, int index1, Object... values) {
+			for(int i = 0; i < values.length; i++) {
+				elements.set(index0+i, values[i]);
+			}
+			fireContentsChanged(this, index0, index1);
+		}
+	}
+}
@@ -0,0 +1,160 @@
+/*
+ * Copyright 2005 Patrick Gotthardt
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.pagosoft.swing;
+
+import javax.swing.*;
+import java.awt.*;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * <p>Run with <code>java com.pagosoft.swing.ListModelBinderTest</code>,
+ * throws an AssertionError if a check fails.</p>
+ *
+ * @author Patrick Gotthardt
+ */
+public class ListModelBinderTest {
+	public static void main(String[] args) throws Exception {
+		SwingUtilities.invokeAndWait(new Runnable() {
+			public void run() {
+				changedInPlace();
+				modelAheadOfEvents();
+				unknownRange();
+			}
+		});
+		sizeChangedByContentsEvent();
+		System.out.println("ListModelBinderTest passed");
+	}
+
+	// the element stays the same, but its contents change
+	static void changedInPlace() {
+		Model model = new Model(new Label("a"), new Label("b"), new Label("c"));
+		JPanel panel = bind(model);
+		Component c = panel.getComponent(2);
+		((Label)model.elements.get(1)).text = "B";
+		model.changed(1, 1);
+		checkComponents(panel, "a", "B", "c");
+		check(panel.getComponent(2) == c, "components outside the range are kept");
+	}
+
+	// the model already contains the element the next event will add
+	static void modelAheadOfEvents() {
+		Model model = new Model(new Label("a"));
+		JPanel panel = bind(model);
+		model.elements.add(new Label("b"));
+		model.changed(0, 0);
+		model.added(1, 1);
+		checkComponents(panel, "a", "b");
+	}
+
+	// without a range the components of the same elements are reused
+	static void unknownRange() {
+		Label a = new Label("a");
+		Label b = new Label("b");
+		Model model = new Model(a, b);
+		JPanel panel = bind(model);
+		Component componentA = panel.getComponent(0);
+		Component componentB = panel.getComponent(1);
+		model.elements.set(0, b);
+		model.elements.set(1, a);
+		model.elements.add(new Label("c"));
+		model.changed(-1, -1);
+		checkComponents(panel, "b", "a", "c");
+		check(panel.getComponent(0) == componentB || panel.getComponent(1) == componentA, "a component is reused");
+	}
+
+	// some models announce any change with a single contentsChanged
+	static void sizeChangedByContentsEvent() throws Exception {
+		final Model model = new Model(new Label("a"), new Label("b"));
+		final JPanel[] panel = new JPanel[1];
+		SwingUtilities.invokeAndWait(new Runnable() {
+			public void run() {
+				panel[0] = bind(model);
+				model.elements.add(0, new Label("c"));
+				model.elements.add(new Label("d"));
+				model.changed(0, 3);
+			}
+		});
+		// the components are compared once the events have been handled
+		SwingUtilities.invokeAndWait(new Runnable() {
+			public void run() {
+				checkComponents(panel[0], "c", "a", "b", "d");
+			}
+		});
+	}
+
+	private static JPanel bind(ListModel<?> model) {
+		JPanel panel = new JPanel();
+		ListModelBinder.install(panel, model, new ComponentProvider() {
+			public JComponent createComponent(Object obj) {
+				return new JLabel(String.valueOf(obj));
+			}
+		});
+		return panel;
+	}
+
+	private static void checkComponents(JPanel panel, String... expected) {
+		Component[] components = panel.getComponents();
+		String[] texts = new String[components.length];
+		for(int i = 0; i < components.length; i++) {
+			texts[i] = ((JLabel)components[i]).getText();
+		}
+		check(Arrays.equals(texts, expected), "expected "+Arrays.toString(expected)+" but was "+Arrays.toString(texts));
+	}
+
+	private static void check(boolean condition, String message) {
+		if(!condition) {
+			throw new AssertionError(message);
+		}
+	}
+
+	private static class Label {
+		private String text;
+
+		public Label(String text) {
+			this.text = text;
+		}
+
+		public String toString() {
+			return text;
+		}
+	}
+
+	private static class Model extends AbstractListModel<Object> {
+		private List<Object> elements;
+
+		public Model(Object... elements) {
+			this.elements = new ArrayList<Object>(Arrays.asList(elements));
+		}
+
+		public int getSize() {
+			return elements.size();
+		}
+
+		public Object getElementAt(int index) {
+			return elements.get(index);
+		}
+
+		public void changed(int index0, int index1) {
+			fireContentsChanged(this, index0, index1);
+		}
+
+		public void added(int index0, int index1) {
+			fireIntervalAdded(this, index0, index1);
+		}
+	}
+}